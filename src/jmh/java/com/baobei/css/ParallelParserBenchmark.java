@@ -0,0 +1,42 @@
+package com.baobei.css;
+
+import java.io.IOException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import com.baobei.css.model.Stylesheet;
+import org.openjdk.jmh.annotations.*;
+
+// How ParallelParser scales with the number of threads.  ParserBenchmark.compile() is the
+// single-threaded baseline.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ParallelParserBenchmark {
+    @Param({"medium", "huge"})
+    public String size;
+
+    @Param({"1", "2", "4", "8"})
+    public int parallelism;
+
+    private String text;
+    private ForkJoinPool pool;
+    private ParallelParser parser;
+
+    @Setup
+    public void setup() {
+        text = Sheets.get(size);
+        pool = new ForkJoinPool(parallelism);
+        parser = new ParallelParser(pool);
+    }
+
+    @TearDown
+    public void tearDown() {
+        pool.shutdown();
+    }
+
+    @Benchmark
+    public Stylesheet parallel() throws IOException {
+        return parser.compile(text);
+    }
+}
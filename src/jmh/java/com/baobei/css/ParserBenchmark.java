@@ -0,0 +1,95 @@
+package com.baobei.css;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import com.baobei.css.model.BinaryStylesheet;
+import com.baobei.css.model.CompactStylesheet;
+import com.baobei.css.model.Stylesheet;
+import org.openjdk.jmh.annotations.*;
+
+// End to end parsing, and the ways around parsing everything again
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ParserBenchmark {
+    @Param({"small", "medium", "huge"})
+    public String size;
+
+    private String text;
+    private Path file;
+    private ByteBuffer binary;
+    private IncrementalParser incremental;
+    private int editOffset;
+    private StylesheetCache cache;
+
+    @Setup
+    public void setup() throws IOException {
+        text = Sheets.get(size);
+
+        file = Files.createTempFile("benchmark", ".css");
+        Files.write(file, text.getBytes(StandardCharsets.UTF_8));
+
+        Stylesheet sheet = new Parser(new ParseAdapter()).compile(text);
+        binary = ByteBuffer.wrap(BinaryStylesheet.toBytes(sheet, ContentHash.hash(text)));
+
+        incremental = new IncrementalParser(text);
+        editOffset = text.indexOf("red", text.length() / 2);
+
+        cache = new StylesheetCache();
+        cache.get(text);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.delete(file);
+    }
+
+    // Events only, no model is kept
+    @Benchmark
+    public void parse() throws IOException {
+        new Parser(new ParseAdapter()).parse(text);
+    }
+
+    // Compare with parse(), the file is memory-mapped and decoded while parsing
+    @Benchmark
+    public void parseFile() throws IOException {
+        new Parser(new ParseAdapter()).parse(file);
+    }
+
+    @Benchmark
+    public Stylesheet compile() throws IOException {
+        return new Parser(new ParseAdapter()).compile(text);
+    }
+
+    @Benchmark
+    public CompactStylesheet compileCompact() throws IOException {
+        return new CompactStylesheet(new Parser(new ParseAdapter()).compile(text));
+    }
+
+    // Compare with compile()
+    @Benchmark
+    public Stylesheet loadBinary() throws IOException {
+        return BinaryStylesheet.read(binary);
+    }
+
+    // Replace a value in the middle of the sheet, and back
+    @Benchmark
+    public Stylesheet edit() {
+        incremental.edit(editOffset, 3, "blue");
+        incremental.getStylesheet();
+        incremental.edit(editOffset, 4, "red");
+
+        return incremental.getStylesheet();
+    }
+
+    // Hashing the source is the whole cost of a hit
+    @Benchmark
+    public Stylesheet cacheHit() throws IOException {
+        return cache.get(text);
+    }
+}
@@ -0,0 +1,38 @@
+package com.baobei.css;
+
+// Stylesheet text for the benchmarks, in the sizes they are parameterized with
+public final class Sheets {
+    static final String BLOCK =
+        "body { color: red } "
+        + "html {\n"
+        + "font-family: sans-serif;\n"
+        + "line-height: 1.15;\n"
+        + "-ms-text-size-adjust: 100%;\n"
+        + "-webkit-text-size-adjust: 100% }\n"
+        + "/* comment */ a:hover > span.note, ul li:nth-child(2n+1) { background: url(\"img/x.png\") no-repeat }\n"
+        + "input[type=\"text\"] { border: solid .25em #bbb; }\n"
+        + ".grad { background: -webkit-gradient(linear, left top, color-stop(35%, #eeeeee), color-stop(100%, #cccccc)) }\n";
+
+    private Sheets() {
+    }
+
+    // small (4 KB), medium (256 KB) or huge (16 MB)
+    public static String get(String size) {
+        int length;
+
+        if (size.equals("small"))
+            length = 4 * 1024;
+        else if (size.equals("medium"))
+            length = 256 * 1024;
+        else if (size.equals("huge"))
+            length = 16 * 1024 * 1024;
+        else
+            throw new IllegalArgumentException("Unknown sheet size: " + size);
+
+        StringBuilder result = new StringBuilder(length + BLOCK.length());
+        while (result.length() < length)
+            result.append(BLOCK);
+
+        return result.toString();
+    }
+}
@@ -0,0 +1,41 @@
+package com.baobei.css;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+// Tokens per second out of getNext(), on a String and on a streamed Reader
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class TokenizerBenchmark {
+    @Param({"small", "medium", "huge"})
+    public String size;
+
+    private String text;
+
+    @Setup
+    public void setup() {
+        text = Sheets.get(size);
+    }
+
+    @Benchmark
+    public int string() throws IOException {
+        return count(new Tokenizer(text));
+    }
+
+    @Benchmark
+    public int reader() throws IOException {
+        return count(new Tokenizer(new java.io.StringReader(text)));
+    }
+
+    private static int count(Tokenizer tokens) throws IOException {
+        int count = 0;
+
+        while (tokens.getNext() != -1)
+            count++;
+
+        return count;
+    }
+}
@@ -0,0 +1,140 @@
+package com.baobei.css.match;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import com.baobei.css.ParseAdapter;
+import com.baobei.css.Parser;
+import com.baobei.css.model.Stylesheet;
+import org.openjdk.jmh.annotations.*;
+
+// Candidate lookup for 256 elements through the RuleIndex buckets, and by walking every path.
+// Class names are Zipf distributed in both the rules and the elements, so a few classes are on
+// many rules and most are on one or two, as in real stylesheets.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class RuleIndexBenchmark {
+    static final String[] TAGS = { "div", "span", "a", "li", "ul", "p", "img", "input", "button", "td" };
+    static final int CLASSES = 2000;
+    static final int ELEMENTS = 256;
+
+    // Number of rules in the stylesheet
+    @Param({"1000", "10000"})
+    public int rules;
+
+    private RuleIndex index;
+    private RuleIndex.Candidates candidates = new RuleIndex.Candidates();
+    private String[] names = new String[ELEMENTS];
+    private String[] ids = new String[ELEMENTS];
+    private String[][] classNames = new String[ELEMENTS][];
+
+    @Setup
+    public void setup() throws Exception {
+        Random random = new Random(8);
+        double[] zipf = zipf(CLASSES);
+        StringBuilder css = new StringBuilder();
+
+        for (int x = 0; x < rules; x++) {
+            int kind = random.nextInt(100);
+
+            // Mostly class selectors, then tags, ids and a few universal ones
+            if (kind < 70)
+                css.append(TAGS[random.nextInt(TAGS.length)]).append(" .c").append(pick(random, zipf));
+            else if (kind < 85)
+                css.append(".c").append(pick(random, zipf)).append(" > ").append(TAGS[random.nextInt(TAGS.length)]);
+            else if (kind < 99)
+                css.append("#id").append(random.nextInt(rules));
+            else
+                css.append("[data-x").append(random.nextInt(20)).append("]");
+
+            css.append(" { color: red }\n");
+        }
+
+        index = new RuleIndex(new Parser(new ParseAdapter()).compile(css.toString()));
+
+        for (int x = 0; x < ELEMENTS; x++) {
+            names[x] = TAGS[random.nextInt(TAGS.length)];
+            ids[x] = (random.nextInt(8) == 0 ? "id" + random.nextInt(rules) : null);
+            classNames[x] = new String[random.nextInt(4)];
+
+            for (int y = 0; y < classNames[x].length; y++)
+                classNames[x][y] = "c" + pick(random, zipf);
+        }
+    }
+
+    // Cumulative probabilities of a Zipf distribution over count values
+    private static double[] zipf(int count) {
+        double[] result = new double[count];
+        double sum = 0;
+
+        for (int x = 0; x < count; x++) {
+            sum += 1.0 / (x + 1);
+            result[x] = sum;
+        }
+
+        for (int x = 0; x < count; x++)
+            result[x] /= sum;
+
+        return result;
+    }
+
+    private static int pick(Random random, double[] zipf) {
+        int index = Arrays.binarySearch(zipf, random.nextDouble());
+        return (index < 0 ? -index - 1 : index);
+    }
+
+    @Benchmark
+    public int getCandidates() {
+        int total = 0;
+
+        for (int x = 0; x < ELEMENTS; x++) {
+            index.getCandidates(names[x], ids[x], classNames[x], candidates);
+            total += candidates.size();
+        }
+
+        return total;
+    }
+
+    // What finding the candidates cost without the index: every path's rightmost key is checked
+    @Benchmark
+    public int scanAll() {
+        Stylesheet sheet = index.getStylesheet();
+        int total = 0;
+
+        for (int x = 0; x < ELEMENTS; x++) {
+            for (int entry = 0; entry < index.getEntryCount(); entry++) {
+                int selector = index.getSelector(entry), path = index.getPath(entry);
+                String key = sheet.getTag(selector, path, sheet.getTagCount(selector, path) - 1).name;
+
+                switch (RuleIndex.getBucket(sheet, selector, path)) {
+                    case RuleIndex.BUCKET_ID:
+                        if (key.equals(ids[x]))
+                            total++;
+                        break;
+
+                    case RuleIndex.BUCKET_CLASS:
+                        for (int y = 0; y < classNames[x].length; y++) {
+                            if (key.equals(classNames[x][y])) {
+                                total++;
+                                break;
+                            }
+                        }
+                        break;
+
+                    case RuleIndex.BUCKET_TAG:
+                        if (key.equals(names[x]))
+                            total++;
+                        break;
+
+                    default:
+                        total++;
+                        break;
+                }
+            }
+        }
+
+        return total;
+    }
+}
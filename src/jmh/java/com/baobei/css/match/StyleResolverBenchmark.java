@@ -0,0 +1,47 @@
+package com.baobei.css.match;
+
+import java.util.IdentityHashMap;
+import java.util.concurrent.TimeUnit;
+
+import com.baobei.css.ParseAdapter;
+import com.baobei.css.Parser;
+import org.openjdk.jmh.annotations.*;
+
+// Resolving every element of a document, with and without Style sharing
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class StyleResolverBenchmark {
+    // Number of list items, each with a link inside, so 50000 is a tree of 100k elements
+    @Param({"100", "10000", "50000"})
+    public int items;
+
+    @Param({"0", "1024"})
+    public int cacheSize;
+
+    private RuleIndex index;
+    private Element root;
+
+    @Setup
+    public void setup() throws Exception {
+        StringBuilder css = new StringBuilder("li { color: red } .item { margin: 1 } li.odd { color: green } .odd a { color: black }\n");
+        for (int x = 0; x < 200; x++)
+            css.append(".menu").append(x).append(" li a:hover, #id").append(x).append(" > span { color: blue }\n");
+
+        index = new RuleIndex(new Parser(new ParseAdapter()).compile(css.toString()));
+        root = new Element("body");
+
+        Element list = root.append(new Element("ul").addClass("menu7"));
+        for (int x = 0; x < items; x++) {
+            Element item = list.append(new Element("li").addClass("item"));
+            if (x % 3 == 0)
+                item.addClass("odd");
+            item.append(new Element("a"));
+        }
+    }
+
+    @Benchmark
+    public IdentityHashMap<Node, Style> resolveTree() {
+        return new StyleResolver(index, cacheSize).resolveTree(root);
+    }
+}
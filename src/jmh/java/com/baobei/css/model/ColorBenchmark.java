@@ -0,0 +1,46 @@
+package com.baobei.css.model;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+// Color.saturation() one color at a time, against the batch version over the same palette
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ColorBenchmark {
+    @Param({"16", "1024", "65536"})
+    public int colors;
+
+    @Param({"-50", "50"})
+    public int percent;
+
+    private int[] in, out;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(16);
+
+        in = new int[colors];
+        out = new int[colors];
+
+        for (int x = 0; x < colors; x++)
+            in[x] = random.nextInt() & 0xffffff;
+    }
+
+    @Benchmark
+    public int[] loop() {
+        for (int x = 0; x < colors; x++)
+            out[x] = Color.saturation(in[x], percent);
+
+        return out;
+    }
+
+    @Benchmark
+    public int[] batch() {
+        Color.saturation(in, out, percent);
+
+        return out;
+    }
+}
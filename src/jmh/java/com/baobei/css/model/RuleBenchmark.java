@@ -0,0 +1,69 @@
+package com.baobei.css.model;
+
+import java.util.Vector;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+// Rule.equals() with the active pseudos as Vectors, and as a PseudoSet
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class RuleBenchmark {
+    // Number of pseudos active on the element
+    @Param({"1", "4", "16"})
+    public int active;
+
+    private Rule rule;
+    private Vector<String> pseudos = new Vector<String>();
+    private Vector<String> pseudoArgs = new Vector<String>();
+    private Vector<Integer> weights = new Vector<Integer>();
+    private PseudoSet pseudoSet = new PseudoSet();
+    private int[] match = new int[3];
+
+    @Setup
+    public void setup() {
+        rule = new Rule();
+        rule.name = "color";
+        rule.pseudos = new Vector<String>();
+        rule.pseudoArgs = new Vector<String>();
+        rule.pseudos.add("hover");
+        rule.pseudoArgs.add(null);
+        rule.pseudos.add("lang");
+        rule.pseudoArgs.add("en");
+
+        // As in a Stylesheet, where the Rule's PseudoSet is built once
+        rule = rule.readOnlyCopy();
+
+        for (int x = 0; x < active; x++) {
+            String pseudo = (x == 0 ? "hover" : x == 1 ? "lang" : "state" + x);
+            String arg = (x == 1 ? "en-US" : null);
+
+            pseudos.add(pseudo);
+            pseudoArgs.add(arg);
+            weights.add(x + 1);
+            pseudoSet.add(pseudo, arg, x + 1);
+        }
+    }
+
+    @Benchmark
+    public boolean vectors() {
+        return rule.equals("color", pseudos, pseudoArgs, weights, match);
+    }
+
+    @Benchmark
+    public boolean pseudoSet() {
+        return rule.equals("color", pseudoSet, match);
+    }
+
+    // An element's state changed: refill its set, then match
+    @Benchmark
+    public boolean stateChange() {
+        pseudoSet.clear();
+
+        for (int x = 0; x < active; x++)
+            pseudoSet.add(pseudos.elementAt(x), pseudoArgs.elementAt(x), weights.elementAt(x));
+
+        return rule.equals("color", pseudoSet, match);
+    }
+}
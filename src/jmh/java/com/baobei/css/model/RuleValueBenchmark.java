@@ -0,0 +1,80 @@
+package com.baobei.css.model;
+
+import java.util.concurrent.TimeUnit;
+
+import com.baobei.css.ParseAdapter;
+import com.baobei.css.Parser;
+import org.openjdk.jmh.annotations.*;
+
+// Typed getters of values that were decoded at parse time, of a folded function call, and of a
+// function call that runs every time
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class RuleValueBenchmark {
+    private RuleValue number, color, string, folded, call;
+    private CompactStylesheet compact;
+    private int compactNumber, compactColor;
+
+    @Setup
+    public void setup() throws Exception {
+        Stylesheet sheet = new Parser(new ParseAdapter()).compile(
+            "a { size: 12pt; color: #336699; font: \"Times\"; fill: saturation(#336699, 50%); stroke: later(#336699) }");
+
+        number = sheet.getRule(0, 0).getValue(0);
+        color = sheet.getRule(0, 1).getValue(0);
+        string = sheet.getRule(0, 2).getValue(0);
+        folded = sheet.getRule(0, 3).getValue(0);
+
+        // Bound to a function that is not constant, so it is not folded
+        call = sheet.getRule(0, 4).getValue(0);
+        call.setFunction(new CssFunction() {
+            public RuleValue call(java.util.List<RuleValue> args) {
+                return args.get(0);
+            }
+
+            public boolean isConstant() {
+                return false;
+            }
+        });
+
+        compact = new CompactStylesheet(sheet);
+        compactNumber = compact.getValue(compact.getRule(0, 0), 0);
+        compactColor = compact.getValue(compact.getRule(0, 1), 0);
+    }
+
+    @Benchmark
+    public int getInt() throws Exception {
+        return number.getInt();
+    }
+
+    @Benchmark
+    public int getColor() throws Exception {
+        return color.getColor();
+    }
+
+    @Benchmark
+    public String get() throws Exception {
+        return string.get();
+    }
+
+    @Benchmark
+    public int getColorFolded() throws Exception {
+        return folded.getColor();
+    }
+
+    @Benchmark
+    public int getColorCall() throws Exception {
+        return call.getColor();
+    }
+
+    @Benchmark
+    public int getIntCompact() throws Exception {
+        return compact.getInt(compactNumber);
+    }
+
+    @Benchmark
+    public int getColorCompact() throws Exception {
+        return compact.getColor(compactColor);
+    }
+}
@@ -0,0 +1,229 @@
+/*
+ * Compiles many stylesheets at once, ie. every per-component sheet of an application
+ *
+ * Every file or source is compiled by its own Parser, so each task has its own Tokenizer,
+ * SymbolTable and state, and nothing is shared between tasks except the FunctionRegistry (which
+ * is thread safe).  Results come back in the order they were given, with the error of each one
+ * kept with it instead of stopping the batch.
+ *
+ * By default tasks run on virtual threads when the JVM has them (Java 21 and up), or on a thread
+ * for each processor otherwise.  The number of files open at the same time is capped separately,
+ * since virtual threads would otherwise open every file at once.
+ */
+package com.baobei.css;
+
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import com.baobei.css.model.*;
+
+public class BatchParser implements AutoCloseable {
+    public static final int MAX_OPEN_FILES = 64;
+
+    private final ExecutorService executor;
+    private final boolean ownsExecutor;
+    private final Semaphore openFiles;
+    private final AtomicInteger open = new AtomicInteger();
+    private final AtomicInteger peakOpen = new AtomicInteger();
+    private volatile FunctionRegistry functions = FunctionRegistry.getDefault();
+    private volatile ParseMetrics metrics;
+
+    // Outcome for one file or source
+    public static class Result {
+        private final String name;
+        private final Path path;
+        private final Stylesheet stylesheet;
+        private final Exception exception;
+
+        Result(String name, Path path, Stylesheet stylesheet, Exception exception) {
+            this.name = name;
+            this.path = path;
+            this.stylesheet = stylesheet;
+            this.exception = exception;
+        }
+
+        // Path of the file, or the name given with the source
+        public String getName() {
+            return name;
+        }
+
+        // Null for sources
+        public Path getPath() {
+            return path;
+        }
+
+        // Null if the file could not be read
+        public Stylesheet getStylesheet() {
+            return stylesheet;
+        }
+
+        // Error that stopped the file from being read, or null
+        public Exception getException() {
+            return exception;
+        }
+
+        // True if the file could not be read, or has a parse error
+        public boolean hasError() {
+            return exception != null || stylesheet.getError() != null;
+        }
+    }
+
+    public BatchParser() {
+        this(newDefaultExecutor(), MAX_OPEN_FILES, true);
+    }
+
+    // The executor is not shut down by close()
+    public BatchParser(ExecutorService executor, int maxOpenFiles) {
+        this(executor, maxOpenFiles, false);
+    }
+
+    private BatchParser(ExecutorService executor, int maxOpenFiles, boolean ownsExecutor) {
+        this.executor = executor;
+        this.ownsExecutor = ownsExecutor;
+        this.openFiles = new Semaphore(maxOpenFiles, true);
+    }
+
+    // Virtual threads are looked up by reflection, so this still builds and runs on Java 17
+    private static ExecutorService newDefaultExecutor() {
+        try {
+            Method method = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) method.invoke(null);
+        } catch (Exception e) {
+            return Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), new ThreadFactory() {
+                private final AtomicInteger count = new AtomicInteger();
+
+                public Thread newThread(Runnable task) {
+                    Thread thread = new Thread(task, "css-batch-" + count.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+    }
+
+    public void setFunctions(FunctionRegistry functions) {
+        this.functions = functions;
+    }
+
+    // Shared by every task's Parser
+    public void setMetrics(ParseMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    // Most files that were open at the same time so far
+    public int getPeakOpenFiles() {
+        return peakOpen.get();
+    }
+
+    public List<Result> compile(Collection<Path> paths) throws InterruptedException {
+        ArrayList<Callable<Result>> tasks = new ArrayList<Callable<Result>>(paths.size());
+
+        for (final Path path : paths) {
+            tasks.add(new Callable<Result>() {
+                public Result call() throws InterruptedException {
+                    return compileFile(path);
+                }
+            });
+        }
+
+        return run(tasks);
+    }
+
+    // Sources by name, ie. a LinkedHashMap to keep the order of the results
+    public List<Result> compileSources(Map<String, String> sources) throws InterruptedException {
+        ArrayList<Callable<Result>> tasks = new ArrayList<Callable<Result>>(sources.size());
+
+        for (final Map.Entry<String, String> source : sources.entrySet()) {
+            tasks.add(new Callable<Result>() {
+                public Result call() {
+                    try {
+                        Parser parser = newParser();
+                        parser.setSource(source.getKey());
+
+                        return new Result(source.getKey(), null, parser.compile(source.getValue()), null);
+                    } catch (Exception e) {
+                        return new Result(source.getKey(), null, null, e);
+                    }
+                }
+            });
+        }
+
+        return run(tasks);
+    }
+
+    // A new Parser for every task, so no parse state is ever shared between threads
+    private Parser newParser() {
+        Parser parser = new Parser(new ParseAdapter());
+        parser.setFunctions(functions);
+        parser.setMetrics(metrics);
+
+        return parser;
+    }
+
+    private Result compileFile(Path path) throws InterruptedException {
+        openFiles.acquire();
+
+        try {
+            int count = open.incrementAndGet();
+            for (int peak = peakOpen.get(); count > peak && !peakOpen.compareAndSet(peak, count); peak = peakOpen.get())
+                ;
+
+            try {
+                return new Result(path.toString(), path, newParser().compile(path), null);
+            } catch (IOException e) {
+                return new Result(path.toString(), path, null, e);
+            } catch (RuntimeException e) {
+                return new Result(path.toString(), path, null, e);
+            } finally {
+                open.decrementAndGet();
+            }
+        } finally {
+            openFiles.release();
+        }
+    }
+
+    private List<Result> run(List<Callable<Result>> tasks) throws InterruptedException {
+        List<Future<Result>> futures = executor.invokeAll(tasks);
+        ArrayList<Result> results = new ArrayList<Result>(futures.size());
+
+        for (Future<Result> future : futures) {
+            try {
+                results.add(future.get());
+            } catch (ExecutionException e) {
+                // Tasks keep their own Exceptions in their Result, so only an Error, or the
+                // interrupt of a task waiting for a file, can get here
+                Throwable cause = e.getCause();
+
+                if (cause instanceof InterruptedException) {
+                    Thread.currentThread().interrupt();
+                    throw (InterruptedException) cause;
+                }
+
+                if (cause instanceof Error)
+                    throw (Error) cause;
+
+                throw new IllegalStateException(cause);
+            }
+        }
+
+        return results;
+    }
+
+    // Shuts down the default executor.  An executor that was passed in is left running.
+    public void close() {
+        if (ownsExecutor)
+            executor.shutdown();
+    }
+}
\ No newline at end of file
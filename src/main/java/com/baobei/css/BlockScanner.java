@@ -0,0 +1,68 @@
+/*
+ * Finds the ends of top-level rule blocks without tokenizing, for splitting a source into pieces
+ * that parse on their own
+ *
+ * Comments and strings are skipped the same way the Tokenizer skips them, so braces inside them
+ * do not count.  After the '}' that closes a top-level block the parser is back in its start
+ * state, so the text that follows can be parsed by itself.
+ */
+package com.baobei.css;
+
+final class BlockScanner {
+    private BlockScanner() {
+    }
+
+    // End (offset after the closing '}') of the block that starts at start, or limit if the block
+    // is not closed.  The number of new lines in source[start .. end - 1] is put in lines[0].
+    static int end(char[] source, int start, int limit, int[] lines) {
+        int depth = 0, count = 0;
+
+        for (int x = start; x < limit; x++) {
+            char character = source[x];
+
+            switch (character) {
+                case '\n':
+                    count++;
+                    break;
+
+                case '"':
+                case '\'':
+                    // Strings end at the same quote, or at a new line where the Tokenizer reports an error
+                    while (x + 1 < limit && source[x + 1] != character && source[x + 1] != '\n' && source[x + 1] != '\r')
+                        x++;
+                    if (x + 1 < limit && source[x + 1] == character)
+                        x++;
+                    break;
+
+                case '/':
+                    if (x + 1 < limit && source[x + 1] == '*') {
+                        char last = 0;
+
+                        for (x += 2; x < limit; x++) {
+                            if (source[x] == '/' && last == '*')
+                                break;
+                            if (source[x] == '\n')
+                                count++;
+                            last = source[x];
+                        }
+                    }
+                    break;
+
+                case '{':
+                    depth++;
+                    break;
+
+                case '}':
+                    // An unbalanced '}' is a parse error, left for the parser to report
+                    if (depth > 0 && --depth == 0) {
+                        lines[0] = count;
+                        return x + 1;
+                    }
+                    break;
+            }
+        }
+
+        lines[0] = count;
+        return limit;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,53 @@
+/*
+ * Listener used by Parser.compile() to collect a Stylesheet, while still passing every event on
+ * to the parser's own listener
+ */
+package com.baobei.css;
+
+import com.baobei.css.model.*;
+
+class CompileListener implements ParseListener {
+    private ParseListener listener;
+    private Stylesheet.Builder builder;
+    private int line;
+
+    CompileListener(ParseListener listener, FunctionRegistry functions) {
+        this.listener = listener;
+        this.builder = new Stylesheet.Builder(functions);
+    }
+
+    Stylesheet build() {
+        return builder.build();
+    }
+
+    public void selectorStart(int line) {
+        this.line = line;
+        listener.selectorStart(line);
+    }
+
+    public void tag(Tag tag) {
+        listener.tag(tag);
+    }
+
+    public void path(Selector selector, int path) {
+        listener.path(selector, path);
+    }
+
+    public void value(RuleValue value) {
+        listener.value(value);
+    }
+
+    public void declaration(Rule rule) {
+        listener.declaration(rule);
+    }
+
+    public void selectorEnd(Selector selector) {
+        builder.add(selector, line);
+        listener.selectorEnd(selector);
+    }
+
+    public void error(String message, int line) {
+        builder.setError(message, line);
+        listener.error(message, line);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,89 @@
+/*
+ * Fast 64-bit hash of stylesheet source, to tell whether a source has changed
+ *
+ * Mixes 4 chars (or 8 bytes) at a time, in the style of MurmurHash3.  Not cryptographic.  Text and
+ * the bytes of its encoding give different hashes, so a caller has to stick to one of them.
+ */
+package com.baobei.css;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+public final class ContentHash {
+    private static final long C1 = 0x87c37b91114253d5L;
+    private static final long C2 = 0x4cf5ad432745937fL;
+
+    private ContentHash() {
+    }
+
+    public static long hash(CharSequence text) {
+        int length = text.length(), x = 0;
+        long hash = 0;
+
+        for (; x + 4 <= length; x += 4) {
+            long block = text.charAt(x) | ((long) text.charAt(x + 1) << 16) |
+                ((long) text.charAt(x + 2) << 32) | ((long) text.charAt(x + 3) << 48);
+
+            hash = mix(hash, block);
+        }
+
+        long tail = 0;
+        for (int shift = 0; x < length; x++, shift += 16)
+            tail |= (long) text.charAt(x) << shift;
+
+        return finish(hash ^ scramble(tail), length);
+    }
+
+    public static long hash(char[] text, int offset, int length) {
+        int end = offset + length, x = offset;
+        long hash = 0;
+
+        for (; x + 4 <= end; x += 4) {
+            long block = text[x] | ((long) text[x + 1] << 16) | ((long) text[x + 2] << 32) | ((long) text[x + 3] << 48);
+
+            hash = mix(hash, block);
+        }
+
+        long tail = 0;
+        for (int shift = 0; x < end; x++, shift += 16)
+            tail |= (long) text[x] << shift;
+
+        return finish(hash ^ scramble(tail), length);
+    }
+
+    // Hash of the remaining bytes of buffer.  The buffer's position is not changed.
+    public static long hash(ByteBuffer buffer) {
+        ByteBuffer bytes = buffer.slice().order(ByteOrder.LITTLE_ENDIAN);
+        int length = bytes.remaining(), x = 0;
+        long hash = 0;
+
+        for (; x + 8 <= length; x += 8)
+            hash = mix(hash, bytes.getLong(x));
+
+        long tail = 0;
+        for (int shift = 0; x < length; x++, shift += 8)
+            tail |= (long) (bytes.get(x) & 0xff) << shift;
+
+        return finish(hash ^ scramble(tail), length);
+    }
+
+    private static long scramble(long block) {
+        return Long.rotateLeft(block * C1, 31) * C2;
+    }
+
+    private static long mix(long hash, long block) {
+        hash ^= scramble(block);
+
+        return Long.rotateLeft(hash, 27) * 5 + 0x52dce729;
+    }
+
+    private static long finish(long hash, int length) {
+        hash ^= length;
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+
+        return hash ^ (hash >>> 33);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,214 @@
+/*
+ * Reader of made-up stylesheet text, for tests and benchmarks that need large inputs
+ *
+ * The text is built from a seeded Random, so the same seed and size always give the same text.
+ * It uses everything the Parser supports: every combinator, attribute selectors in every
+ * Tag.ATTRIB_* mode, pseudos with and without arguments, several paths per selector, comments,
+ * strings, numbers in every unit, colors, and function values nested inside each other.
+ *
+ * Rules are generated as the text is read, so any size can be streamed without holding it.  The
+ * text always ends after a whole rule, so it runs a little past the size asked for.
+ */
+package com.baobei.css;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Random;
+
+public class CorpusGenerator extends Reader {
+    private static final String[] ELEMENTS = {
+        "a", "body", "div", "em", "h1", "html", "input", "li", "p", "span", "table", "td", "ul"
+    };
+    private static final String[] NAMES = {
+        "menu", "item", "note", "header", "footer", "nav", "active", "grad", "title", "content"
+    };
+    private static final String[] COMBINATORS = { " ", " > ", " ~ ", " + " };
+    private static final String[] ATTRIB_MATCHES = { "", "=", "|=", "~=", "^=", "$=", "*=" }; // Tag.ATTRIB_ANY on
+    private static final String[] PSEUDOS = {
+        "hover", "active", "focus", "first-child", "last-child", "checked", "disabled"
+    };
+    private static final String[] PSEUDO_ARGS = {
+        "nth-child(2n+1)", "nth-child(odd)", "nth-of-type(3)", "lang(en)", "lang(fr-CA)", "platform(android)"
+    };
+    private static final String[] PROPERTIES = {
+        "color", "background", "border", "margin", "padding", "font", "font-family", "font-weight",
+        "line-height", "width", "height", "display", "position", "-webkit-text-size-adjust"
+    };
+    private static final String[] KEYWORDS = {
+        "none", "auto", "inherit", "bold", "italic", "left", "center", "block", "inline", "hidden",
+        "solid", "dashed", "transparent", "no-repeat", "absolute", "relative", "sans-serif"
+    };
+    private static final String[] UNITS = { "", "px", "pt", "em", "%" };
+
+    private final Random random;
+    private final long size;
+    private final StringBuilder rule = new StringBuilder(256);
+    private long produced; // Chars of the rules generated so far
+    private int position; // Next char of rule to read
+
+    public CorpusGenerator(long seed, long size) {
+        this.random = new Random(seed);
+        this.size = size;
+    }
+
+    // The whole text for a seed and size
+    public static String generate(long seed, int size) {
+        CorpusGenerator generator = new CorpusGenerator(seed, size);
+        StringBuilder result = new StringBuilder(size + 512);
+
+        while (generator.produced < size)
+            result.append(generator.nextRule());
+
+        return result.toString();
+    }
+
+    public int read(char[] buffer, int offset, int length) {
+        if (position == rule.length()) {
+            if (produced >= size)
+                return -1;
+
+            nextRule();
+        }
+
+        int count = Math.min(length, rule.length() - position);
+
+        rule.getChars(position, position + count, buffer, offset);
+        position += count;
+
+        return count;
+    }
+
+    public void close() throws IOException {
+    }
+
+    private String pick(String[] choices) {
+        return choices[random.nextInt(choices.length)];
+    }
+
+    private StringBuilder nextRule() {
+        rule.setLength(0);
+        position = 0;
+
+        if (random.nextInt(8) == 0)
+            rule.append("/* ").append(pick(NAMES)).append(" { } */\n");
+
+        // Selector paths
+        int paths = 1 + random.nextInt(3);
+        for (int x = 0; x < paths; x++) {
+            if (x != 0)
+                rule.append(", ");
+
+            int tags = 1 + random.nextInt(4);
+            boolean pseudo = false;
+
+            for (int y = 0; y < tags; y++) {
+                // The parser takes no sibling combinator after a pseudo without an argument
+                if (y != 0)
+                    rule.append(COMBINATORS[random.nextInt(pseudo ? 2 : COMBINATORS.length)]);
+
+                pseudo = appendTag();
+            }
+        }
+
+        // Declarations
+        rule.append(" {\n");
+
+        int declarations = 1 + random.nextInt(6);
+        for (int x = 0; x < declarations; x++) {
+            rule.append("  ").append(pick(PROPERTIES)).append(": ");
+            appendValue(false);
+
+            int more = random.nextInt(4) == 0 ? 1 + random.nextInt(3) : 0;
+            for (int y = 0; y < more; y++) {
+                rule.append(' ');
+                appendValue(false);
+            }
+
+            rule.append(";\n");
+        }
+
+        rule.append("}\n");
+        produced += rule.length();
+
+        return rule;
+    }
+
+    // Returns true if the tag ends with a pseudo without an argument
+    private boolean appendTag() {
+        int kind = random.nextInt(4);
+
+        if (kind != 1)
+            rule.append(pick(ELEMENTS));
+
+        if (kind == 1 || random.nextInt(6) == 0)
+            rule.append('#').append(pick(NAMES)).append(random.nextInt(100));
+
+        if (kind == 1 || kind == 2)
+            rule.append('.').append(pick(NAMES));
+
+        if (random.nextInt(5) == 0) {
+            String match = pick(ATTRIB_MATCHES);
+
+            rule.append('[').append(pick(NAMES));
+            if (match.length() != 0)
+                rule.append(match).append('"').append(pick(NAMES)).append('-').append(random.nextInt(10)).append('"');
+            rule.append(']');
+        }
+
+        if (random.nextInt(4) != 0)
+            return false;
+
+        boolean plain = random.nextBoolean();
+        rule.append(':').append(plain ? pick(PSEUDOS) : pick(PSEUDO_ARGS));
+
+        return plain;
+    }
+
+    // The parser takes function calls as arguments of a function, but no deeper, so the arguments
+    // of a nested call are plain values
+    private void appendValue(boolean nested) {
+        switch (random.nextInt(nested ? 4 : 7)) {
+            case 0:
+                rule.append(random.nextInt(2) == 0 ? "-" : "").append(random.nextInt(1000));
+                if (random.nextBoolean())
+                    rule.append('.').append(random.nextInt(100));
+                rule.append(pick(UNITS));
+                break;
+
+            case 1:
+                rule.append('#').append(Integer.toHexString(0x1000000 | random.nextInt(0x1000000)).substring(random.nextBoolean() ? 1 : 4));
+                break;
+
+            case 2:
+                rule.append(pick(KEYWORDS));
+                break;
+
+            case 3:
+                rule.append('"').append(pick(NAMES)).append(' ').append(pick(NAMES)).append('"');
+                break;
+
+            case 4:
+                rule.append("url(\"img/").append(pick(NAMES)).append(random.nextInt(100)).append(".png\")");
+                break;
+
+            case 5:
+                rule.append("saturation(#").append(Integer.toHexString(0x1000000 | random.nextInt(0x1000000)).substring(1));
+                rule.append(", ").append(random.nextInt(200) - 100).append("%)");
+                break;
+
+            default:
+                // ie. -webkit-gradient(linear, left top, color-stop(35%, #eeeeee), ...)
+                rule.append("-webkit-gradient(linear, left top");
+
+                int stops = 1 + random.nextInt(3);
+                for (int x = 0; x < stops; x++) {
+                    rule.append(", color-stop(").append(random.nextInt(101)).append("%, ");
+                    appendValue(true);
+                    rule.append(')');
+                }
+
+                rule.append(')');
+                break;
+        }
+    }
+}
\ No newline at end of file
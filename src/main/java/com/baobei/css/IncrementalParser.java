@@ -0,0 +1,299 @@
+/*
+ * Keeps a stylesheet compiled while its text is being edited, ie. in a theme editor
+ *
+ * The text is split into top-level blocks (see BlockScanner), and each block is compiled on its
+ * own.  An edit only re-parses the blocks it touches: scanning starts at the block holding the
+ * edit and stops at the first block end that lines up with an old block end past the edit.  The
+ * blocks after that are kept as they are.  So the parse work for an edit depends on the size of
+ * the edited blocks, not of the whole sheet.
+ *
+ * The rest of an edit is kept small too:
+ *
+ *   - The text is a gap buffer, so an edit only moves the chars between it and the last edit.
+ *   - Blocks hold their length and number of lines, not where they start, so the blocks after
+ *     an edit do not change.  Where a block starts is the sum of the blocks before it.
+ *   - Blocks are grouped in chunks of about CHUNK_BLOCKS, each with its totals and its blocks
+ *     joined into one Stylesheet.  An edit rebuilds the chunks it touches, and getStylesheet()
+ *     joins the chunks into a view (see Stylesheet.join()) instead of copying every selector.
+ *
+ * Not thread safe.
+ */
+package com.baobei.css;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import com.baobei.css.model.*;
+
+public class IncrementalParser {
+    static final int CHUNK_BLOCKS = 64;
+
+    private final Parser parser = new Parser(new ParseAdapter());
+    private char[] text; // The text is text[0 .. gapStart - 1] followed by text[gapEnd ..]
+    private int gapStart, gapEnd;
+    private ArrayList<Chunk> chunks = new ArrayList<Chunk>();
+    private int blockCount;
+    private Stylesheet stylesheet; // Joined chunks, or null until it is asked for again
+    private int reparsed; // Blocks parsed by the last edit
+    private int keptChunk, keptBlock; // First old block that the last parse() lined up with
+
+    private static final class Block {
+        final int length; // Chars of text in the block
+        final int lines; // New lines in the block
+        final int parsedLine; // Line the block started at when it was parsed
+        final Stylesheet sheet;
+
+        Block(int length, int lines, int parsedLine, Stylesheet sheet) {
+            this.length = length;
+            this.lines = lines;
+            this.parsedLine = parsedLine;
+            this.sheet = sheet;
+        }
+    }
+
+    private static final class Chunk {
+        final List<Block> blocks;
+        final int length; // Total of the blocks
+        final int lines;
+        private Stylesheet sheet; // The blocks joined, with lines counted from 1 at the chunk
+
+        Chunk(List<Block> blocks) {
+            int length = 0, lines = 0;
+
+            for (int x = 0; x < blocks.size(); x++) {
+                length += blocks.get(x).length;
+                lines += blocks.get(x).lines;
+            }
+
+            this.blocks = blocks;
+            this.length = length;
+            this.lines = lines;
+        }
+
+        Stylesheet getStylesheet() {
+            if (sheet == null) {
+                Stylesheet[] parts = new Stylesheet[blocks.size()];
+                int[] shifts = new int[parts.length];
+                int line = 1;
+
+                for (int x = 0; x < parts.length; x++) {
+                    Block block = blocks.get(x);
+
+                    parts[x] = block.sheet;
+                    shifts[x] = line - block.parsedLine;
+                    line += block.lines;
+                }
+
+                sheet = Stylesheet.concat(parts, shifts);
+            }
+
+            return sheet;
+        }
+    }
+
+    public IncrementalParser(String source) {
+        this(source, FunctionRegistry.getDefault());
+    }
+
+    public IncrementalParser(String source, FunctionRegistry functions) {
+        parser.setFunctions(functions);
+        text = source.toCharArray();
+
+        ArrayList<Block> parsed = parse(0, 1, 0, -1, 0, 0, 0);
+
+        chunks.addAll(chunk(parsed));
+        blockCount = parsed.size();
+        reparsed = parsed.size();
+    }
+
+    public String getText() {
+        return new StringBuilder(length()).append(text, 0, gapStart).append(text, gapEnd, text.length - gapEnd).toString();
+    }
+
+    private int length() {
+        return text.length - (gapEnd - gapStart);
+    }
+
+    public int getBlockCount() {
+        return blockCount;
+    }
+
+    // Number of blocks that the last edit had to parse again
+    public int getReparsedBlocks() {
+        return reparsed;
+    }
+
+    // The same Stylesheet Parser.compile() gives for the current text.  Selectors of blocks that
+    // were not edited are the same objects as before.
+    public Stylesheet getStylesheet() {
+        if (stylesheet == null) {
+            int count = chunks.size();
+            Stylesheet[] parts = new Stylesheet[count];
+            int[] shifts = new int[count];
+            int line = 1;
+
+            for (int x = 0; x < count; x++) {
+                Chunk chunk = chunks.get(x);
+
+                parts[x] = chunk.getStylesheet();
+                shifts[x] = line - 1;
+                line += chunk.lines;
+            }
+
+            stylesheet = Stylesheet.join(parts, shifts);
+        }
+
+        return stylesheet;
+    }
+
+    // Replace removed chars at offset with inserted
+    public void edit(int offset, int removed, String inserted) {
+        int length = length();
+
+        if (offset < 0 || removed < 0 || offset + removed > length)
+            throw new IllegalArgumentException("Edit " + offset + "+" + removed + " is outside the text (" + length + ")");
+
+        // First block touched by the edit: the last one that starts at or before offset.  Blocks
+        // are never empty, except for an empty text.
+        int chunk = 0, block = 0, start = 0, line = 1;
+
+        while (chunk + 1 < chunks.size() && start + chunks.get(chunk).length <= offset) {
+            start += chunks.get(chunk).length;
+            line += chunks.get(chunk).lines;
+            chunk++;
+        }
+
+        List<Block> blocks = chunks.get(chunk).blocks;
+
+        while (block + 1 < blocks.size() && start + blocks.get(block).length <= offset) {
+            start += blocks.get(block).length;
+            line += blocks.get(block).lines;
+            block++;
+        }
+
+        // Splice the text at the gap, then move the gap to the start of the block so the blocks
+        // to parse are in one piece after it
+        moveGap(offset);
+        gapEnd += removed;
+
+        if (gapEnd - gapStart < inserted.length()) {
+            char[] more = new char[Math.max(length + inserted.length(), text.length * 2)];
+            int tail = text.length - gapEnd;
+
+            System.arraycopy(text, 0, more, 0, gapStart);
+            System.arraycopy(text, gapEnd, more, more.length - tail, tail);
+            gapEnd = more.length - tail;
+            text = more;
+        }
+
+        inserted.getChars(0, inserted.length(), text, gapStart);
+        gapStart += inserted.length();
+        moveGap(start);
+
+        // Names from earlier edits are not needed again
+        parser.getSymbols().clear();
+
+        ArrayList<Block> parsed = parse(start, line, offset + inserted.length(), chunk, block, start, inserted.length() - removed);
+        reparsed = parsed.size();
+
+        // Swap the parsed blocks in for the old ones from the first touched block up to the first
+        // one kept, and rebuild the chunks they were in
+        int last = Math.min(keptChunk, chunks.size() - 1);
+        ArrayList<Block> rebuilt = new ArrayList<Block>(block + parsed.size());
+
+        rebuilt.addAll(blocks.subList(0, block));
+        rebuilt.addAll(parsed);
+
+        if (keptChunk < chunks.size()) {
+            List<Block> kept = chunks.get(keptChunk).blocks;
+            rebuilt.addAll(kept.subList(keptBlock, kept.size()));
+        }
+
+        List<Chunk> replaced = chunks.subList(chunk, last + 1);
+
+        for (int x = 0; x < replaced.size(); x++)
+            blockCount -= replaced.get(x).blocks.size();
+
+        replaced.clear();
+        replaced.addAll(chunk(rebuilt));
+        blockCount += rebuilt.size();
+        stylesheet = null;
+    }
+
+    // Move the gap to offset in the text
+    private void moveGap(int offset) {
+        if (offset < gapStart)
+            System.arraycopy(text, offset, text, gapEnd - (gapStart - offset), gapStart - offset);
+        else if (offset > gapStart)
+            System.arraycopy(text, gapEnd, text, gapStart, offset - gapStart);
+
+        gapEnd += offset - gapStart;
+        gapStart = offset;
+    }
+
+    // Parse blocks from start, which must be at the gap, until the end of the text.  If an edit
+    // ends at editEnd, stop at the first block end past it that is the start of an old block,
+    // walking the old blocks from block in chunk, which started at oldStart before the text moved
+    // by delta.  keptChunk and keptBlock are set to that old block, or to chunks.size() if none
+    // are kept.
+    private ArrayList<Block> parse(int start, int line, int editEnd, int chunk, int block, int oldStart, int delta) {
+        ArrayList<Block> parsed = new ArrayList<Block>();
+        int length = length(), gap = gapEnd - gapStart;
+        int[] lines = new int[1];
+
+        keptChunk = chunks.size();
+        keptBlock = 0;
+
+        while (start < length || (parsed.isEmpty() && length == 0)) {
+            int end = BlockScanner.end(text, start + gap, length + gap, lines) - gap;
+
+            try {
+                Stylesheet sheet = parser.compile(new Tokenizer(text, start + gap, end + gap, line));
+                parsed.add(new Block(end - start, lines[0], line, sheet));
+            } catch (IOException e) {
+                // Cannot happen, the text is in memory
+                throw new IllegalStateException(e);
+            }
+
+            line += lines[0];
+            start = end;
+
+            if (chunk < 0 || end < editEnd)
+                continue;
+
+            while (chunk < chunks.size() && oldStart + delta < end) {
+                List<Block> blocks = chunks.get(chunk).blocks;
+
+                oldStart += blocks.get(block).length;
+
+                if (++block == blocks.size()) {
+                    chunk++;
+                    block = 0;
+                }
+            }
+
+            if (chunk < chunks.size() && oldStart + delta == end) {
+                keptChunk = chunk;
+                keptBlock = block;
+                break;
+            }
+        }
+
+        return parsed;
+    }
+
+    // Group blocks into chunks of CHUNK_BLOCKS, or one chunk if there are up to twice as many
+    private static ArrayList<Chunk> chunk(ArrayList<Block> blocks) {
+        ArrayList<Chunk> result = new ArrayList<Chunk>();
+        int count = Math.max(blocks.size() / CHUNK_BLOCKS, 1);
+
+        for (int x = 0; x < count; x++) {
+            int from = (int) ((long) blocks.size() * x / count), to = (int) ((long) blocks.size() * (x + 1) / count);
+
+            if (to > from)
+                result.add(new Chunk(new ArrayList<Block>(blocks.subList(from, to))));
+        }
+
+        return result;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,145 @@
+/*
+ * Compiles large stylesheets on several threads
+ *
+ * A quick pre-scan (see BlockScanner) splits the source after top-level '}' characters, skipping
+ * comments and strings the same way the Tokenizer does.  The parser is back in its start state at each of those
+ * points, so every chunk can be compiled by its own Parser on a ForkJoinPool.  Each chunk's
+ * Tokenizer starts counting at the line where the chunk starts, and the chunks are joined in
+ * source order, so the result is the same Stylesheet a single Parser.compile() returns.
+ */
+package com.baobei.css;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import com.baobei.css.model.*;
+
+public class ParallelParser {
+    public static final int MIN_CHUNK_SIZE = 64 * 1024; // Smaller sources are not worth splitting
+
+    private final ForkJoinPool pool;
+    private int chunkSize = MIN_CHUNK_SIZE;
+    private FunctionRegistry functions = FunctionRegistry.getDefault();
+    private ParseMetrics metrics;
+
+    private static class Chunk extends RecursiveTask<Stylesheet> {
+        private static final long serialVersionUID = 1L;
+
+        private final char[] source;
+        private final int start, end, line;
+        private final FunctionRegistry functions;
+        private final ParseMetrics metrics;
+
+        Chunk(char[] source, int start, int end, int line, FunctionRegistry functions, ParseMetrics metrics) {
+            this.source = source;
+            this.start = start;
+            this.end = end;
+            this.line = line;
+            this.functions = functions;
+            this.metrics = metrics;
+        }
+
+        protected Stylesheet compute() {
+            Parser parser = new Parser(new ParseAdapter());
+            parser.setFunctions(functions);
+            parser.setMetrics(metrics);
+
+            try {
+                return parser.compile(new Tokenizer(source, start, end, line));
+            } catch (IOException e) {
+                // Cannot happen, the source is already in memory
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+
+    public ParallelParser() {
+        this(ForkJoinPool.commonPool());
+    }
+
+    public ParallelParser(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    // Smallest number of chars in a chunk.  Chunks end at the first split point past this size.
+    public void setChunkSize(int chunkSize) {
+        this.chunkSize = Math.max(1, chunkSize);
+    }
+
+    public void setFunctions(FunctionRegistry functions) {
+        this.functions = functions;
+    }
+
+    // Each chunk counts as a parse, including chunks after an error that the result leaves out
+    public void setMetrics(ParseMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    public Stylesheet compile(String source) {
+        return compile(source.toCharArray());
+    }
+
+    public Stylesheet compile(Path path) throws IOException {
+        return compile(new String(Files.readAllBytes(path), StandardCharsets.UTF_8));
+    }
+
+    public Stylesheet compile(char[] source) {
+        // Aim for a few chunks per thread, so uneven chunks still balance out
+        int size = Math.max(chunkSize, source.length / (pool.getParallelism() * 4 + 1));
+        int[] splits = split(source, size);
+        int count = splits.length / 2;
+
+        ArrayList<Chunk> chunks = new ArrayList<Chunk>(count);
+        for (int x = 0; x < count; x++) {
+            int start = splits[x * 2], end = (x + 1 < count ? splits[x * 2 + 2] : source.length);
+            chunks.add(new Chunk(source, start, end, splits[x * 2 + 1], functions, metrics));
+        }
+
+        final ArrayList<Chunk> tasks = chunks;
+        pool.invoke(new RecursiveTask<Void>() {
+            protected Void compute() {
+                invokeAll(tasks);
+                return null;
+            }
+        });
+
+        Stylesheet[] parts = new Stylesheet[count];
+        for (int x = 0; x < count; x++)
+            parts[x] = chunks.get(x).join();
+
+        return Stylesheet.concat(parts);
+    }
+
+    // Find where chunks of at least size chars can start.  Returns pairs of (offset, line), the
+    // first one always being (0, 1).
+    static int[] split(char[] source, int size) {
+        int[] result = new int[16], lines = new int[1];
+        int count = 0, line = 1, next = size;
+
+        result[count++] = 0;
+        result[count++] = 1;
+
+        for (int start = 0; start < source.length;) {
+            int end = BlockScanner.end(source, start, source.length, lines);
+
+            line += lines[0];
+            start = end;
+
+            if (end >= next && end < source.length) {
+                if (count == result.length)
+                    result = Arrays.copyOf(result, count * 2);
+
+                result[count++] = end;
+                result[count++] = line;
+                next = end + size;
+            }
+        }
+
+        return Arrays.copyOf(result, count);
+    }
+}
\ No newline at end of file
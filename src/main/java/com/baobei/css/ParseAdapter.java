@@ -0,0 +1,29 @@
+/*
+ * Listener that ignores every event.  Extend it to handle only the events you need.
+ */
+package com.baobei.css;
+
+import com.baobei.css.model.*;
+
+public class ParseAdapter implements ParseListener {
+    public void selectorStart(int line) {
+    }
+
+    public void tag(Tag tag) {
+    }
+
+    public void path(Selector selector, int path) {
+    }
+
+    public void value(RuleValue value) {
+    }
+
+    public void declaration(Rule rule) {
+    }
+
+    public void selectorEnd(Selector selector) {
+    }
+
+    public void error(String message, int line) {
+    }
+}
\ No newline at end of file
@@ -0,0 +1,41 @@
+/*
+ * Flight Recorder event for one parse, so slow or large stylesheets show up in a JFR recording
+ * next to the GC and thread events of the same time
+ *
+ * Parser emits one for every parse() and compile().  ParallelParser and IncrementalParser emit
+ * one per chunk or block they parse.  Like any JFR event it is only written when a recording has
+ * it enabled and it lasts longer than its threshold, and otherwise costs a few checks per parse.
+ *
+ *   java -XX:StartFlightRecording:filename=css.jfr ...
+ *   jfr print --events com.baobei.css.Parse css.jfr
+ */
+package com.baobei.css;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Name("com.baobei.css.Parse")
+@Label("CSS Parse")
+@Category("CSS")
+@Description("Parse of a stylesheet, or of one chunk of it")
+@StackTrace(false)
+public final class ParseEvent extends jdk.jfr.Event {
+    @Label("Source")
+    @Description("File path, or the name given to Parser.setSource()")
+    String source;
+
+    @Label("Size")
+    @Description("Chars of input read, the same as bytes for ASCII stylesheets")
+    @DataAmount
+    long size;
+
+    @Label("Selectors")
+    int selectors;
+
+    @Label("Errors")
+    int errors;
+}
\ No newline at end of file
@@ -0,0 +1,39 @@
+/*
+ * Receives the parts of a stylesheet as the parser finishes them
+ *
+ * Events for one selector arrive in this order:
+ *
+ *   selectorStart
+ *       tag ... tag, path          (once for each comma separated path)
+ *       value ... value, declaration   (once for each rule in the block)
+ *   selectorEnd
+ *
+ * The Selector, Tag, Rule and RuleValue objects passed in are reused by the parser once the
+ * selector ends, so anything that needs to be kept has to be copied.
+ */
+package com.baobei.css;
+
+import com.baobei.css.model.*;
+
+public interface ParseListener {
+    // First token of a new selector was found at this line
+    void selectorStart(int line);
+
+    // A tag of the current path is complete
+    void tag(Tag tag);
+
+    // A path of the selector is complete.  Paths are separated by commas.
+    void path(Selector selector, int path);
+
+    // A value of the current rule is complete, including any function arguments
+    void value(RuleValue value);
+
+    // A rule (ie. color: red) is complete
+    void declaration(Rule rule);
+
+    // Closing brace of the selector was found.  Weights have been calculated.
+    void selectorEnd(Selector selector);
+
+    // Parsing stops after an error
+    void error(String message, int line);
+}
\ No newline at end of file
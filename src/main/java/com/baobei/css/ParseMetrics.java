@@ -0,0 +1,200 @@
+/*
+ * Counts what parsing costs: input size, tokens by type, selectors, paths, declarations, errors,
+ * and the time spent tokenizing against the time spent in the parser and its listener
+ *
+ * Set one on a Parser (or a ParallelParser or BatchParser) with setMetrics().  A Parser without
+ * metrics only pays a null check per token.  With metrics, each parse counts into its own
+ * Counter, which is added to the totals when the parse ends, so one ParseMetrics can be shared by
+ * parsers on any number of threads.
+ *
+ * Reading the clock for every token would cost more than tokenizing some of them, so only one
+ * token in SAMPLE is timed, and the tokenizing time is scaled up from those.
+ */
+package com.baobei.css;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+public final class ParseMetrics {
+    static final int SAMPLE = 16; // Power of 2
+
+    // Names of the token types in toMap(), indexed by type.  There is no type 11.
+    private static final String[] TOKEN_NAMES = {
+        "bar", "braceLeft", "braceRight", "bracketLeft", "bracketRight", "caret", "colon", "comma",
+        "dollar", "equals", "greaterThan", null, "identifier", "parenLeft", "parenRight", "plus",
+        "semicolon", "star", "string", "tilde", "error"
+    };
+
+    private long parses, chars, selectors, paths, declarations, errors;
+    private long tokenizeNanos, totalNanos;
+    private final long[] tokens = new long[TOKEN_NAMES.length];
+
+    // Counts of a single parse, kept by the thread running it
+    static final class Counter {
+        long selectors, paths, declarations, errors;
+        long count, timed, timedNanos;
+        final long[] tokens = new long[TOKEN_NAMES.length];
+        final long start = System.nanoTime();
+
+        int next(Tokenizer tokenizer) throws IOException {
+            int token;
+
+            if ((count++ & (SAMPLE - 1)) != 0) {
+                token = tokenizer.getNext();
+            } else {
+                long start = System.nanoTime();
+                token = tokenizer.getNext();
+                timedNanos += System.nanoTime() - start;
+                timed++;
+            }
+
+            if (token >= 0)
+                tokens[token]++;
+
+            return token;
+        }
+    }
+
+    synchronized void add(Counter counter, Tokenizer tokenizer) {
+        long total = System.nanoTime() - counter.start;
+
+        parses++;
+        chars += tokenizer.chars;
+        selectors += counter.selectors;
+        paths += counter.paths;
+        declarations += counter.declarations;
+        errors += counter.errors;
+        totalNanos += total;
+
+        // Scale the timed calls up to all of them
+        if (counter.timed != 0)
+            tokenizeNanos += Math.min(total, counter.timedNanos * counter.count / counter.timed);
+
+        for (int x = 0; x < tokens.length; x++)
+            tokens[x] += counter.tokens[x];
+    }
+
+    public synchronized Snapshot snapshot() {
+        return new Snapshot(this);
+    }
+
+    public synchronized void reset() {
+        parses = chars = selectors = paths = declarations = errors = 0;
+        tokenizeNanos = totalNanos = 0;
+
+        for (int x = 0; x < tokens.length; x++)
+            tokens[x] = 0;
+    }
+
+    // Totals at one point in time
+    public static final class Snapshot {
+        private final long parses, chars, selectors, paths, declarations, errors;
+        private final long tokenizeNanos, totalNanos;
+        private final long[] tokens;
+
+        private Snapshot(ParseMetrics metrics) {
+            this.parses = metrics.parses;
+            this.chars = metrics.chars;
+            this.selectors = metrics.selectors;
+            this.paths = metrics.paths;
+            this.declarations = metrics.declarations;
+            this.errors = metrics.errors;
+            this.tokenizeNanos = metrics.tokenizeNanos;
+            this.totalNanos = metrics.totalNanos;
+            this.tokens = metrics.tokens.clone();
+        }
+
+        public long getParses() {
+            return parses;
+        }
+
+        // Chars of input read.  The same as bytes for ASCII stylesheets.
+        public long getChars() {
+            return chars;
+        }
+
+        public long getTokens() {
+            long total = 0;
+
+            for (int x = 0; x < tokens.length; x++)
+                total += tokens[x];
+
+            return total;
+        }
+
+        // Tokens of one type, by its name in toMap(), ie. "identifier"
+        public long getTokens(String type) {
+            for (int x = 0; x < TOKEN_NAMES.length; x++) {
+                if (type.equals(TOKEN_NAMES[x]))
+                    return tokens[x];
+            }
+
+            throw new IllegalArgumentException("Unknown token type: " + type);
+        }
+
+        // Selectors that had at least one tag
+        public long getSelectors() {
+            return selectors;
+        }
+
+        public long getPaths() {
+            return paths;
+        }
+
+        public long getDeclarations() {
+            return declarations;
+        }
+
+        public long getErrors() {
+            return errors;
+        }
+
+        // Estimated time in the Tokenizer
+        public long getTokenizeNanos() {
+            return tokenizeNanos;
+        }
+
+        // Time in the parser and its listener, ie. building the Stylesheet in compile()
+        public long getBuildNanos() {
+            return totalNanos - tokenizeNanos;
+        }
+
+        public long getTotalNanos() {
+            return totalNanos;
+        }
+
+        // Every value by name, in a fixed order, for logging or a metrics system
+        public Map<String, Long> toMap() {
+            LinkedHashMap<String, Long> result = new LinkedHashMap<String, Long>();
+
+            result.put("parses", parses);
+            result.put("chars", chars);
+            result.put("tokens", getTokens());
+            result.put("selectors", selectors);
+            result.put("paths", paths);
+            result.put("declarations", declarations);
+            result.put("errors", errors);
+            result.put("tokenizeNanos", tokenizeNanos);
+            result.put("buildNanos", getBuildNanos());
+            result.put("totalNanos", totalNanos);
+
+            for (int x = 0; x < TOKEN_NAMES.length; x++) {
+                if (TOKEN_NAMES[x] != null)
+                    result.put("tokens." + TOKEN_NAMES[x], tokens[x]);
+            }
+
+            return result;
+        }
+
+        // name=value pairs, one per line
+        public String toString() {
+            StringBuilder result = new StringBuilder();
+
+            for (Map.Entry<String, Long> entry : toMap().entrySet())
+                result.append(entry.getKey()).append('=').append(entry.getValue()).append('\n');
+
+            return result.toString();
+        }
+    }
+}
\ No newline at end of file
@@ -9,8 +9,14 @@
  */
 package com.baobei.css;
 
+import java.io.InputStream;
+import java.io.InputStreamReader;
 import java.io.Reader;
 import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import com.baobei.css.model.*;
 
 public class Parser {
@@ -40,15 +46,63 @@ public class Parser {
     private static final int VALUE_PREDEFINED = 2; // none, underline, bold, italic, etc.
 
     //private Node dom;
-
+    private SymbolTable symbols = new SymbolTable();
+    private ParseListener listener;
+    private FunctionRegistry functions = FunctionRegistry.getDefault();
+    private ParseMetrics metrics; // null unless metrics were asked for
+    private ParseMetrics.Counter counter; // Counts of the parse in progress, when metrics is set
+    private String source; // Name of the input in ParseEvents
+    private int selectors, errors; // Of the parse in progress, for its ParseEvent
+
+    // Prints each selector as it is parsed
     public Parser( /*Node dom*/ ) {
+        this(new PrintListener());
         //this.dom = dom;
     }
 
+    public Parser(ParseListener listener) {
+        this.listener = listener;
+    }
+
+    // Identifiers from every parse are interned here, so equal names are the same String instance.
+    // The table keeps every distinct name this Parser has seen, so a Parser that lives across
+    // many inputs should clear() it between them.  Stylesheets already compiled keep their names.
+    public SymbolTable getSymbols() {
+        return symbols;
+    }
+
+    // Functions that compile() binds function values to, and folds constant calls with
+    public FunctionRegistry getFunctions() {
+        return functions;
+    }
+
+    public void setFunctions(FunctionRegistry functions) {
+        this.functions = functions;
+    }
+
+    public ParseMetrics getMetrics() {
+        return metrics;
+    }
+
+    // Count every parse into metrics from now on, or stop counting with null
+    public void setMetrics(ParseMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    public String getSource() {
+        return source;
+    }
+
+    // Name of the input in the ParseEvents of later parses, ie. a theme id.  parse(Path) and
+    // compile(Path) name the event after the file instead.
+    public void setSource(String source) {
+        this.source = source;
+    }
+
     // This is called after each selector is parsed and ready to be matched against the DOM
     public void selectorParsed(Selector selector) {
         selector.calcWeight();
-        selector.print();
+        listener.selectorEnd(selector);
         //dom.match(selector);
     }
 
@@ -78,19 +132,122 @@ public class Parser {
     } */
 
     public void parse(String reader) throws IOException {
-        Tokenizer tokens = new Tokenizer();
+        parse(new Tokenizer(reader));
+    }
+
+    // Streamed input is tokenized through a fixed-size buffer, so memory use does not grow with the input size
+    public void parse(Reader reader) throws IOException {
+        parse(new Tokenizer(reader));
+    }
+
+    // Input stream is decoded as UTF-8
+    public void parse(InputStream input) throws IOException {
+        parse(new Tokenizer(new InputStreamReader(input, Charset.forName("UTF-8"))));
+    }
+
+    // The file is memory-mapped and decoded as UTF-8 while it is tokenized, so it is never copied onto the heap
+    public void parse(Path path) throws IOException {
+        parse(map(path), path.toString());
+    }
+
+    // Parse into a Stylesheet that outlives the parse.  Events are still passed to this parser's listener.
+    public Stylesheet compile(String reader) throws IOException {
+        return compile(new Tokenizer(reader));
+    }
+
+    public Stylesheet compile(Reader reader) throws IOException {
+        return compile(new Tokenizer(reader));
+    }
+
+    public Stylesheet compile(InputStream input) throws IOException {
+        return compile(new Tokenizer(new InputStreamReader(input, Charset.forName("UTF-8"))));
+    }
+
+    public Stylesheet compile(Path path) throws IOException {
+        return compile(map(path), path.toString());
+    }
+
+    Stylesheet compile(Tokenizer tokens) throws IOException {
+        return compile(tokens, source);
+    }
+
+    private Stylesheet compile(Tokenizer tokens, String source) throws IOException {
+        ParseListener previous = this.listener;
+        CompileListener compiler = new CompileListener(previous, functions);
+
+        this.listener = compiler;
+        try {
+            parse(tokens, source);
+        } finally {
+            this.listener = previous;
+        }
+
+        return compiler.build();
+    }
+
+    // The mapping stays valid after the channel is closed
+    private static Tokenizer map(Path path) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+
+        try {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE)
+                throw new IOException("File is too large to map, use parse(Reader) instead: " + path);
 
+            return new Tokenizer(channel.map(FileChannel.MapMode.READ_ONLY, 0, size));
+        } finally {
+            channel.close();
+        }
+    }
+
+    void parse(Tokenizer tokens) throws IOException {
+        parse(tokens, source);
+    }
+
+    private void parse(Tokenizer tokens, String source) throws IOException {
+        ParseMetrics metrics = this.metrics;
+        ParseEvent event = new ParseEvent();
+
+        selectors = 0;
+        errors = 0;
+        if (metrics != null)
+            counter = new ParseMetrics.Counter();
+
+        event.begin();
+        try {
+            parseTokens(tokens);
+        } finally {
+            event.end();
+
+            if (counter != null) {
+                metrics.add(counter, tokens);
+                counter = null;
+            }
+
+            // Only true while a recording has the event enabled
+            if (event.shouldCommit()) {
+                event.source = source;
+                event.size = tokens.chars;
+                event.selectors = selectors;
+                event.errors = errors;
+                event.commit();
+            }
+        }
+    }
+
+    private void parseTokens(Tokenizer tokens) throws IOException {
         int state = NAME_FIRST, token;
-        StringBuffer data = new StringBuffer(64);
-        char[] back = new char[1];
         Selector selector = new Selector();
 
-        while ((token = tokens.getNext(reader, data, back)) != -1) {
-            //System.out.println("-> line " + tokens.line + " " + Tokenizer.getToken(token) + (data.length() == 0 ? "" : " -> " + data.toString()));
+        while ((token = (counter == null ? tokens.getNext() : counter.next(tokens))) != -1) {
+            //System.out.println("-> line " + tokens.line + " " + Tokenizer.getToken(token) + (tokens.length == 0 ? "" : " -> " + tokens.text()));
 
             switch (state) {
                 case NAME_FIRST:
                 case NAME:
+                    if (state == NAME_FIRST)
+                        listener.selectorStart(tokens.line);
+
                     switch (token) {
                         case Tokenizer.IDENTIFIER:
                             if (state == NAME) {
@@ -98,7 +255,7 @@ public class Parser {
                             }
 
                             state = NAME;
-                            selector.setTagName(data.toString());
+                            setTagName(selector, tokens);
                             break;
 
                         case Tokenizer.GREATHER_THAN: // Child relationship: app > tabs
@@ -131,9 +288,10 @@ public class Parser {
                         case Tokenizer.COMMA: // A series of names, separated by commas
                             if (state == NAME) {
                                 state = NAME;
+                                pathEnd(selector);
                                 selector.nextPath();
                             } else {
-                                error("NAME", token, data, tokens.line);
+                                error("NAME", token, tokens);
                                 return;
                             }
                             break;
@@ -141,14 +299,15 @@ public class Parser {
                         case Tokenizer.BRACE_LEFT: // Start of rule block
                             if (state == NAME) {
                                 state = RULE_NAME;
+                                pathEnd(selector);
                             } else {
-                                error("NAME", token, data, tokens.line);
+                                error("NAME", token, tokens);
                                 return;
                             }
                             break;
 
                         default:
-                            error("NAME", token, data, tokens.line);
+                            error("NAME", token, tokens);
                             return;
                     }
                     break;
@@ -157,7 +316,7 @@ public class Parser {
                     switch (token) {
                         case Tokenizer.IDENTIFIER:
                             state = NAME_PSEUDO_END;
-                            selector.lastTag.addPseudo(data.toString());
+                            selector.lastTag.addPseudo(name(tokens));
                             break;
 
                         case Tokenizer.COLON: // If you have two colons: ie. map::after
@@ -165,7 +324,7 @@ public class Parser {
                             break;
 
                         default:
-                            error("NAME_PSEUDO", token, data, tokens.line);
+                            error("NAME_PSEUDO", token, tokens);
                             return;
                     }
                     break;
@@ -174,7 +333,7 @@ public class Parser {
                     switch (token) {
                         case Tokenizer.IDENTIFIER:
                             state = NAME_PSEUDO_ARGUMENT;
-                            selector.lastTag.addPseudoArg(data.toString());
+                            selector.lastTag.addPseudoArg(tokens.text());
                             break;
 
                         case Tokenizer.PLUS: // ie. nth-child(2n+1)
@@ -187,7 +346,7 @@ public class Parser {
                             break;
 
                         default:
-                            error("NAME_PSEUDO_ARGUMENT", token, data, tokens.line);
+                            error("NAME_PSEUDO_ARGUMENT", token, tokens);
                             return;
                     }
                     break;
@@ -200,9 +359,9 @@ public class Parser {
                                 state = NAME;
 
                                 selector.nextTag();
-                                selector.setTagName(data.toString());
+                                setTagName(selector, tokens);
                             } else {
-                                error("NAME_END", token, data, tokens.line);
+                                error("NAME_END", token, tokens);
                                 return;
                             }
                             break;
@@ -211,7 +370,7 @@ public class Parser {
                             if (state == NAME_PSEUDO_END) {
                                 state = NAME_PSEUDO_ARGUMENT;
                             } else {
-                                error("NAME_END", token, data, tokens.line);
+                                error("NAME_END", token, tokens);
                                 return;
                             }
                             break;
@@ -223,6 +382,7 @@ public class Parser {
 
                         case Tokenizer.BRACE_LEFT: // Start of rule block
                             state = RULE_NAME;
+                            pathEnd(selector);
                             break;
 
                         case Tokenizer.COLON:
@@ -234,11 +394,12 @@ public class Parser {
 
                         case Tokenizer.COMMA:
                             state = NAME;
+                            pathEnd(selector);
                             selector.nextPath();
                             break;
 
                         default:
-                            error("NAME_END", token, data, tokens.line);
+                            error("NAME_END", token, tokens);
                             return;
                     }
                     break;
@@ -247,12 +408,12 @@ public class Parser {
                     switch (token) {
                         case Tokenizer.IDENTIFIER:
                             state = NAME_ATTRIBUTE_EQUALS;
-                            selector.lastTag.attribKey = data.toString();
+                            selector.lastTag.attribKey = name(tokens);
                             selector.lastTag.attribMatch = Tag.ATTRIB_ANY;
                             break;
 
                         default:
-                            error("NAME_ATTRIBUTE_BEGIN", token, data, tokens.line);
+                            error("NAME_ATTRIBUTE_BEGIN", token, tokens);
                             return;
                     }
                     break;
@@ -295,7 +456,7 @@ public class Parser {
                             break;
 
                         default:
-                            error("NAME_ATTRIBUTE_EQUALS", token, data, tokens.line);
+                            error("NAME_ATTRIBUTE_EQUALS", token, tokens);
                             return;
                     }
                     break;
@@ -304,11 +465,11 @@ public class Parser {
                     switch (token) {
                         case Tokenizer.STRING:
                             state = NAME_ATTRIBUTE_END;
-                            selector.lastTag.attribValue = data.toString();
+                            selector.lastTag.attribValue = tokens.text();
                             break;
 
                         default:
-                            error("NAME_ATTRIBUTE_VALUE", token, data, tokens.line);
+                            error("NAME_ATTRIBUTE_VALUE", token, tokens);
                             return;
                     }
                     break;
@@ -321,10 +482,11 @@ public class Parser {
 
                         case Tokenizer.BRACE_LEFT: // Start of rule block
                             state = RULE_NAME;
+                            pathEnd(selector);
                             break;
 
                         default:
-                            error("NAME_ATTRIBUTE_END", token, data, tokens.line);
+                            error("NAME_ATTRIBUTE_END", token, tokens);
                             return;
                     }
                     break;
@@ -338,7 +500,7 @@ public class Parser {
                             state = RULE_SEPARATOR;
 
                             selector.nextRule();
-                            selector.lastRule.name = data.toString();
+                            selector.lastRule.name = name(tokens);
                             break;
 
                         case Tokenizer.BRACE_RIGHT: // End of rule block, back to parsing another selector
@@ -350,7 +512,7 @@ public class Parser {
                             break;
 
                         default:
-                            error("RULE_NAME", token, data, tokens.line);
+                            error("RULE_NAME", token, tokens);
                             return;
                     }
                     break;
@@ -362,7 +524,7 @@ public class Parser {
                             break;
 
                         default:
-                            error("RULE_SEPARATOR", token, data, tokens.line);
+                            error("RULE_SEPARATOR", token, tokens);
                             return;
                     }
                     break;
@@ -373,19 +535,19 @@ public class Parser {
                             state = RULE_VALUE_NAME;
 
                             selector.lastRule.nextValue();
-                            selector.lastRule.lastValue.setName(data.toString());
+                            setValueName(selector.lastRule.lastValue, tokens);
                             break;
 
                         case Tokenizer.STRING:
                             state = RULE_VALUE_NAME;
 
                             selector.lastRule.nextValue();
-                            selector.lastRule.lastValue.setName(data.toString());
+                            selector.lastRule.lastValue.setName(tokens.text());
                             selector.lastRule.lastValue.type = RuleValue.TYPE_STRING;
                             break;
 
                         default:
-                            error("RULE_VALUE", token, data, tokens.line);
+                            error("RULE_VALUE", token, tokens);
                             return;
                     }
                     break;
@@ -394,10 +556,11 @@ public class Parser {
                     switch (token) {
                         case Tokenizer.SEMICOLON:
                             state = RULE_NAME;
+                            declarationEnd(selector);
                             break;
 
                         default:
-                            error("RULE_END", token, data, tokens.line);
+                            error("RULE_END", token, tokens);
                             return;
                     }
                     break;
@@ -418,7 +581,7 @@ public class Parser {
                             state = RULE_VALUE_NAME;
 
                             selector.lastRule.nextValue();
-                            selector.lastRule.lastValue.setName(data.toString());
+                            setValueName(selector.lastRule.lastValue, tokens);
                             selector.lastRule.lastValue.type = RuleValue.TYPE_IDENTIFIER;
                             break;
 
@@ -426,7 +589,7 @@ public class Parser {
                             state = RULE_VALUE_NAME;
 
                             selector.lastRule.nextValue();
-                            selector.lastRule.lastValue.setName(data.toString());
+                            selector.lastRule.lastValue.setName(tokens.text());
                             selector.lastRule.lastValue.type = RuleValue.TYPE_STRING;
                             break;
 
@@ -441,14 +604,16 @@ public class Parser {
 
                         case Tokenizer.SEMICOLON:
                             state = RULE_NAME;
+                            declarationEnd(selector);
                             break;
 
                         case Tokenizer.BRACE_RIGHT: // This tolerates missing ';' for last rule
+                            declarationEnd(selector);
                             state = this.selectorEnd(selector);
                             break;
 
                         default:
-                            error("RULE_VALUE_NAME", token, data, tokens.line);
+                            error("RULE_VALUE_NAME", token, tokens);
                             return;
                     }
                     break;
@@ -459,14 +624,14 @@ public class Parser {
                             state = RULE_VALUE_FUNCTION_COMMA;
 
                             selector.lastRule.lastValue.nextFunctionArg();
-                            selector.lastRule.lastValue.lastArg.setName(data.toString());
+                            setValueName(selector.lastRule.lastValue.lastArg, tokens);
                             break;
 
                         case Tokenizer.STRING:
                             state = RULE_VALUE_FUNCTION_COMMA;
 
                             selector.lastRule.lastValue.nextFunctionArg();
-                            selector.lastRule.lastValue.lastArg.setName(data.toString());
+                            selector.lastRule.lastValue.lastArg.setName(tokens.text());
                             selector.lastRule.lastValue.lastArg.type = RuleValue.TYPE_STRING;
                             break;
 
@@ -475,7 +640,7 @@ public class Parser {
                             break;
 
                         default:
-                            error("RULE_VALUE_FUNCTION_ARGUMENT", token, data, tokens.line);
+                            error("RULE_VALUE_FUNCTION_ARGUMENT", token, tokens);
                             return;
                     }
                     break;
@@ -484,7 +649,7 @@ public class Parser {
                     switch (token) {
                         case Tokenizer.IDENTIFIER:
                             state = RULE_VALUE_FUNCTION_COMMA;
-                            selector.lastRule.lastValue.lastArg.setName(data.toString());
+                            setValueName(selector.lastRule.lastValue.lastArg, tokens);
                             break;
 
                         case Tokenizer.EQUALS:
@@ -506,7 +671,7 @@ public class Parser {
                             break;
 
                         default:
-                            error("RULE_VALUE_FUNCTION_COMMA", token, data, tokens.line);
+                            error("RULE_VALUE_FUNCTION_COMMA", token, tokens);
                             return;
                     }
                     break;
@@ -517,14 +682,14 @@ public class Parser {
                             state = RULE_VALUE_FUNCTION_COMMA_2;
 
                             selector.lastRule.lastValue.lastArg.nextFunctionArg();
-                            selector.lastRule.lastValue.lastArg.lastArg.setName(data.toString());
+                            setValueName(selector.lastRule.lastValue.lastArg.lastArg, tokens);
                             break;
 
                         case Tokenizer.STRING:
                             state = RULE_VALUE_FUNCTION_COMMA_2;
 
                             selector.lastRule.lastValue.lastArg.nextFunctionArg();
-                            selector.lastRule.lastValue.lastArg.lastArg.setName(data.toString());
+                            selector.lastRule.lastValue.lastArg.lastArg.setName(tokens.text());
                             selector.lastRule.lastValue.lastArg.lastArg.type = RuleValue.TYPE_STRING;
                             break;
 
@@ -533,7 +698,7 @@ public class Parser {
                             break;
 
                         default:
-                            error("RULE_VALUE_FUNCTION_ARGUMENT_2", token, data, tokens.line);
+                            error("RULE_VALUE_FUNCTION_ARGUMENT_2", token, tokens);
                             return;
                     }
                     break;
@@ -542,7 +707,7 @@ public class Parser {
                     switch (token) {
                         case Tokenizer.IDENTIFIER:
                             state = RULE_VALUE_FUNCTION_COMMA_2;
-                            selector.lastRule.lastValue.lastArg.setName(data.toString());
+                            setValueName(selector.lastRule.lastValue.lastArg, tokens);
                             break;
 
                         case Tokenizer.COMMA:
@@ -554,30 +719,103 @@ public class Parser {
                             break;
 
                         default:
-                            error("RULE_VALUE_FUNCTION_COMMA", token, data, tokens.line);
+                            error("RULE_VALUE_FUNCTION_COMMA", token, tokens);
                             return;
                     }
                     break;
             }
+        }
+    }
+
+    // Send the tags of the last path, followed by the path itself
+    private void pathEnd(Selector selector) {
+        int path = selector.getPathCount() - 1, count = selector.getTagCount(path);
+
+        for (int x = 0; x < count; x++)
+            listener.tag(selector.getTag(path, x));
 
-            data.setLength(0);
+        listener.path(selector, path);
+
+        if (counter != null)
+            counter.paths++;
+    }
+
+    // Send the values of the last rule, followed by the rule itself
+    private void declarationEnd(Selector selector) {
+        Rule rule = selector.lastRule;
+        int count = rule.values.size();
+
+        for (int x = 0; x < count; x++)
+            listener.value(rule.values.elementAt(x));
+
+        listener.declaration(rule);
+
+        if (counter != null)
+            counter.declarations++;
+    }
+
+    private String name(Tokenizer tokens) {
+        return symbols.intern(tokens.buffer, tokens.start, tokens.length);
+    }
+
+    private void setValueName(RuleValue value, Tokenizer tokens) {
+        // Strip off the start of color values here, so RuleValue keeps the interned name
+        if (tokens.buffer[tokens.start] == '#' && tokens.length > 1)
+            value.setColorName(symbols.intern(tokens.buffer, tokens.start + 1, tokens.length - 1));
+        else
+            value.setName(name(tokens));
+    }
+
+    // Same as Selector.setTagName(), but the names are interned straight from the token
+    private void setTagName(Selector selector, Tokenizer tokens) {
+        char[] buffer = tokens.buffer;
+        int start = tokens.start, length = tokens.length, found = -1;
+
+        for (int x = 0; x < length && found == -1; x++) {
+            if (buffer[start + x] == '.')
+                found = x;
+        }
+
+        boolean foundClass = (found != -1);
+        for (int x = 0; x < length && found == -1; x++) {
+            if (buffer[start + x] == '#')
+                found = x;
+        }
+
+        if (found != -1) {
+            if (found > 0)
+                selector.lastTag.name = symbols.intern(buffer, start, found);
+            selector.lastTag.relation = (foundClass ? Tag.RELATION_CLASS : Tag.RELATION_ID);
+            selector.nextTag();
+            selector.lastTag.name = symbols.intern(buffer, start + found + 1, length - found - 1);
+        } else {
+            selector.lastTag.name = symbols.intern(buffer, start, length);
         }
     }
 
     private int selectorEnd(Selector selector) {
-        if (!selector.isEmpty())
+        if (!selector.isEmpty()) {
             selectorParsed(selector);
+            selectors++;
+
+            if (counter != null)
+                counter.selectors++;
+        }
 
         selector.nextSelector();
 
         return NAME_FIRST;
     }
 
-    private void error(String state, int token, StringBuffer data, int line) {
+    private void error(String state, int token, Tokenizer tokens) {
+        errors++;
+        if (counter != null)
+            counter.errors++;
+
         if (token == Tokenizer.ERROR) {
-            System.out.println("ERROR at line " + line + ": " + data.toString());
+            listener.error(tokens.text(), tokens.line);
         } else {
-            System.out.println("ERROR at line " + line + ": unexpected token " + Tokenizer.getToken(token) + " at state " + state);
+            listener.error("unexpected token " + Tokenizer.getToken(token) + " at state " + state, tokens.line);
         }
     }
 }
\ No newline at end of file
@@ -0,0 +1,97 @@
+/*
+ * Build step that compiles stylesheets into the binary form read by BinaryStylesheet
+ *
+ * ie.
+ *   java com.baobei.css.Precompiler theme.css widgets.css
+ *
+ * writes theme.cssb and widgets.cssb.  At runtime load() reads the binary when it was made from
+ * the current source, and parses the source when it was not.
+ */
+package com.baobei.css;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.ByteBuffer;
+import com.baobei.css.model.*;
+
+public final class Precompiler {
+    public static final String EXTENSION = ".cssb";
+
+    private Precompiler() {
+    }
+
+    // Binary file next to a source, ie. theme.cssb for theme.css
+    public static Path getTarget(Path source) {
+        String name = source.getFileName().toString();
+
+        if (name.endsWith(".css"))
+            name = name.substring(0, name.length() - 4);
+
+        return source.resolveSibling(name + EXTENSION);
+    }
+
+    // Hash of the source file's bytes, as kept in the binary header
+    public static long hash(Path source) throws IOException {
+        return ContentHash.hash(BinaryStylesheet.map(source));
+    }
+
+    // A source that does not parse is an error, rather than a binary that stops halfway
+    public static void compile(Path source, Path target) throws IOException {
+        Stylesheet sheet = new Parser(new ParseAdapter()).compile(source);
+
+        if (sheet.getError() != null)
+            throw new IOException(source + ":" + sheet.getErrorLine() + ": " + sheet.getError());
+
+        OutputStream out = Files.newOutputStream(target);
+        try {
+            BinaryStylesheet.write(sheet, hash(source), out);
+        } finally {
+            out.close();
+        }
+    }
+
+    public static Stylesheet load(Path source, Path binary) throws IOException {
+        return load(source, binary, FunctionRegistry.getDefault());
+    }
+
+    // Read binary if it was made from source as it is now, otherwise parse source
+    public static Stylesheet load(Path source, Path binary, FunctionRegistry functions) throws IOException {
+        try {
+            ByteBuffer data = BinaryStylesheet.map(binary);
+
+            if (BinaryStylesheet.getSourceHash(data) == hash(source))
+                return BinaryStylesheet.read(data, functions);
+        } catch (NoSuchFileException e) {
+            // Not precompiled
+        } catch (IOException e) {
+            // Older version or damaged, so parse
+        }
+
+        Parser parser = new Parser(new ParseAdapter());
+        parser.setFunctions(functions);
+
+        return parser.compile(source);
+    }
+
+    public static void main(String[] args) {
+        int failed = 0;
+
+        for (int x = 0; x < args.length; x++) {
+            Path source = Paths.get(args[x]);
+
+            try {
+                compile(source, getTarget(source));
+            } catch (IOException e) {
+                System.err.println(e.getMessage());
+                failed++;
+            }
+        }
+
+        if (failed != 0)
+            System.exit(1);
+    }
+}
\ No newline at end of file
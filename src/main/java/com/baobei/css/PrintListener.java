@@ -0,0 +1,16 @@
+/*
+ * Listener that prints each parsed selector and any error to System.out
+ */
+package com.baobei.css;
+
+import com.baobei.css.model.*;
+
+public class PrintListener extends ParseAdapter {
+    public void selectorEnd(Selector selector) {
+        selector.print();
+    }
+
+    public void error(String message, int line) {
+        System.out.println("ERROR at line " + line + ": " + message);
+    }
+}
\ No newline at end of file
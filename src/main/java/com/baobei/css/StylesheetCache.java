@@ -0,0 +1,298 @@
+/*
+ * Cache of compiled Stylesheets keyed by a hash of their source, for servers that see the same
+ * stylesheet text over and over
+ *
+ * Lookups go through a ConcurrentHashMap, so there is no lock shared by all threads.  The first
+ * thread to miss on a source puts a FutureTask in the map and parses; threads that ask for the same
+ * source meanwhile wait on that task instead of parsing it again.
+ *
+ * Eviction is least recently used, within a limit on the number of entries and on their total
+ * weight (see weigh(), an estimate of the heap each Stylesheet holds).  Each entry records when
+ * it was last used, and when a limit is passed one thread evicts the oldest entries while the
+ * others carry on.  Other threads can use an entry while it is being evicted, so the order is
+ * approximate.
+ *
+ * Stylesheets are read-only, so one instance is handed to every caller.
+ */
+package com.baobei.css;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import com.baobei.css.model.*;
+
+public class StylesheetCache {
+    public static final int MAX_ENTRIES = 1024;
+    public static final long MAX_WEIGHT = 64L * 1024 * 1024; // Bytes of heap, as estimated by weigh()
+
+    // Heap for each part of a Stylesheet, with compressed references, measured on generated
+    // stylesheets.  Each includes the arrays that hold the part.
+    private static final int SELECTOR_BYTES = 48;
+    private static final int PATH_BYTES = 72;
+    private static final int TAG_BYTES = 56;
+    private static final int PSEUDO_BYTES = 96; // With the Tag's or Rule's PseudoSet
+    private static final int RULE_BYTES = 80;
+    private static final int VALUE_BYTES = 96; // Also for each function argument
+
+    private final ConcurrentHashMap<Long, Entry> entries = new ConcurrentHashMap<Long, Entry>();
+    private final int maxEntries;
+    private final long maxWeight;
+    private final AtomicLong clock = new AtomicLong();
+    private final AtomicLong weight = new AtomicLong();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final ReentrantLock evicting = new ReentrantLock();
+    private volatile FunctionRegistry functions = FunctionRegistry.getDefault();
+
+    private static final class Entry {
+        final Long key;
+        final String source;
+        final FutureTask<Stylesheet> task;
+        volatile long used; // Clock value of the last use
+        volatile boolean counted; // True once the weight is in the total, so it can be evicted
+        long weight;
+        long order; // Copy of used that evict() sorts on, as used can change during the sort
+
+        Entry(Long key, String source, FutureTask<Stylesheet> task) {
+            this.key = key;
+            this.source = source;
+            this.task = task;
+        }
+    }
+
+    private static final Comparator<Entry> OLDEST_FIRST = new Comparator<Entry>() {
+        public int compare(Entry a, Entry b) {
+            return Long.compare(a.order, b.order);
+        }
+    };
+
+    public StylesheetCache() {
+        this(MAX_ENTRIES, MAX_WEIGHT);
+    }
+
+    public StylesheetCache(int maxEntries, long maxWeight) {
+        if (maxEntries < 1 || maxWeight < 1)
+            throw new IllegalArgumentException("Cache limits must be positive");
+
+        this.maxEntries = maxEntries;
+        this.maxWeight = maxWeight;
+    }
+
+    // Functions that Stylesheets parsed from now on are bound to
+    public void setFunctions(FunctionRegistry functions) {
+        this.functions = functions;
+    }
+
+    public Stylesheet get(final String source) throws IOException {
+        Long key = ContentHash.hash(source);
+        Entry entry = entries.get(key);
+
+        if (entry == null) {
+            FutureTask<Stylesheet> task = new FutureTask<Stylesheet>(new Callable<Stylesheet>() {
+                public Stylesheet call() throws Exception {
+                    return parse(source);
+                }
+            });
+
+            Entry created = new Entry(key, source, task);
+            entry = entries.putIfAbsent(key, created);
+
+            if (entry == null) {
+                misses.incrementAndGet();
+                created.used = clock.incrementAndGet();
+                task.run();
+
+                Stylesheet sheet;
+                boolean cached = false;
+                try {
+                    sheet = wait(created);
+                    created.weight = weigh(source, sheet);
+                    cached = true;
+                } finally {
+                    // Failures of any kind, from parse() or weigh(), are not cached.  The next
+                    // caller tries again.
+                    if (!cached)
+                        entries.remove(key, created);
+                }
+
+                weight.addAndGet(created.weight);
+                created.counted = true;
+
+                evict();
+                return sheet;
+            }
+        }
+
+        // Two sources with the same hash.  Rare enough to parse without caching.
+        if (!entry.source.equals(source)) {
+            misses.incrementAndGet();
+            return parse(source);
+        }
+
+        hits.incrementAndGet();
+        entry.used = clock.incrementAndGet();
+
+        return wait(entry);
+    }
+
+    private static Stylesheet wait(Entry entry) throws IOException {
+        boolean interrupted = false;
+
+        try {
+            while (true) {
+                try {
+                    return entry.task.get();
+                } catch (InterruptedException e) {
+                    // The parse is already running for other callers too, so see it through
+                    interrupted = true;
+                } catch (ExecutionException e) {
+                    Throwable cause = e.getCause();
+
+                    if (cause instanceof IOException)
+                        throw (IOException) cause;
+                    if (cause instanceof RuntimeException)
+                        throw (RuntimeException) cause;
+                    if (cause instanceof Error)
+                        throw (Error) cause;
+
+                    throw new IOException(cause);
+                }
+            }
+        } finally {
+            if (interrupted)
+                Thread.currentThread().interrupt();
+        }
+    }
+
+    // Parse a source on a miss
+    protected Stylesheet parse(String source) throws IOException {
+        Parser parser = new Parser(new ParseAdapter());
+        parser.setFunctions(functions);
+
+        return parser.compile(source);
+    }
+
+    // Weight of an entry, counted against the weight limit.  By default an estimate of the bytes
+    // of heap the Stylesheet holds, from how many of each part it has, plus two bytes per source
+    // char for its names.  For generated stylesheets this is within about 25% of the measured
+    // size, which is 10 to 20 times the length of the source.
+    protected long weigh(String source, Stylesheet sheet) {
+        long result = 2L * source.length();
+
+        for (int x = 0; x < sheet.getSelectorCount(); x++) {
+            result += SELECTOR_BYTES;
+
+            for (int y = 0; y < sheet.getPathCount(x); y++) {
+                result += PATH_BYTES;
+
+                for (int z = 0; z < sheet.getTagCount(x, y); z++)
+                    result += TAG_BYTES + PSEUDO_BYTES * sheet.getTag(x, y, z).getPseudoCount();
+            }
+
+            for (int y = 0; y < sheet.getRuleCount(x); y++) {
+                Rule rule = sheet.getRule(x, y);
+
+                result += RULE_BYTES + PSEUDO_BYTES * rule.getPseudoCount();
+
+                for (int v = 0; v < rule.getValueCount(); v++)
+                    result += weigh(rule.getValue(v));
+            }
+        }
+
+        return result;
+    }
+
+    private static long weigh(RuleValue value) {
+        long result = VALUE_BYTES;
+
+        for (int x = 0; x < value.getArgCount(); x++)
+            result += weigh(value.getArg(x));
+
+        return result;
+    }
+
+    // Evict the least recently used entries until the cache is within its limits.  If another
+    // thread is already evicting, leave it to that thread.  Parses still running are not evicted.
+    private void evict() {
+        if (isOver() && evicting.tryLock()) {
+            try {
+                ArrayList<Entry> done = new ArrayList<Entry>(entries.size());
+
+                for (Entry entry : entries.values()) {
+                    if (entry.counted) {
+                        entry.order = entry.used;
+                        done.add(entry);
+                    }
+                }
+
+                Collections.sort(done, OLDEST_FIRST);
+
+                for (int x = 0; x < done.size() && isOver(); x++) {
+                    Entry entry = done.get(x);
+
+                    if (entries.remove(entry.key, entry)) {
+                        weight.addAndGet(-entry.weight);
+                        evictions.incrementAndGet();
+                    }
+                }
+            } finally {
+                evicting.unlock();
+            }
+        }
+    }
+
+    private boolean isOver() {
+        return entries.size() > maxEntries || weight.get() > maxWeight;
+    }
+
+    // Drop every entry.  Parses still running finish for their callers.
+    public void clear() {
+        for (Entry entry : entries.values()) {
+            if (entry.counted && entries.remove(entry.key, entry))
+                weight.addAndGet(-entry.weight);
+        }
+    }
+
+    // Number of entries, including parses still running
+    public int size() {
+        return entries.size();
+    }
+
+    // Total weight of the entries
+    public long getWeight() {
+        return weight.get();
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    // Fraction of lookups found in the cache, or 0 before the first lookup
+    public double getHitRate() {
+        long hits = this.hits.get(), total = hits + misses.get();
+
+        return (total == 0 ? 0 : (double) hits / total);
+    }
+
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    public void resetCounters() {
+        hits.set(0);
+        misses.set(0);
+        evictions.set(0);
+    }
+}
\ No newline at end of file
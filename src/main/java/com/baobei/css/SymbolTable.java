@@ -0,0 +1,143 @@
+/*
+ * This class interns the identifiers found by the parser (tag names, pseudos, rule names and values)
+ *
+ * Every distinct identifier is kept once and given an integer id, in the order it was first seen.
+ * Lookups hash the tokenizer's char span directly, so a String is only created the first time a
+ * symbol is seen.
+ */
+package com.baobei.css;
+
+import java.util.Arrays;
+
+public class SymbolTable {
+    private String[] symbols = new String[256]; // Symbol for each id
+    private int[] hashes = new int[256]; // Hash for each id
+    private int[] slots = new int[512]; // Open addressed hash table of (id + 1), or 0 for an empty slot
+    private int count;
+
+    // Forget every symbol and go back to the initial capacity.  Ids handed out before are no
+    // longer valid, but the Strings stay valid for whoever holds them.
+    public void clear() {
+        if (symbols.length == 256) {
+            Arrays.fill(symbols, 0, count, null);
+            Arrays.fill(slots, 0);
+        } else {
+            symbols = new String[256];
+            hashes = new int[256];
+            slots = new int[512];
+        }
+
+        count = 0;
+    }
+
+    // Number of symbols in the table
+    public int size() {
+        return count;
+    }
+
+    // Get the symbol for an id
+    public String get(int id) {
+        return symbols[id];
+    }
+
+    // Returns the id for a symbol, or -1 if it is not in the table
+    public int lookup(String name) {
+        int hash = name.hashCode(), mask = slots.length - 1;
+
+        for (int slot = hash & mask; slots[slot] != 0; slot = (slot + 1) & mask) {
+            int id = slots[slot] - 1;
+
+            if (hashes[id] == hash && symbols[id].equals(name))
+                return id;
+        }
+
+        return -1;
+    }
+
+    public String intern(String name) {
+        int id = add(name); // add() can grow the symbols array, so read it afterwards
+        return symbols[id];
+    }
+
+    public String intern(char[] buffer, int start, int length) {
+        int id = add(buffer, start, length);
+        return symbols[id];
+    }
+
+    // Returns the id for a symbol, adding it to the table if needed
+    public int add(String name) {
+        int id = lookup(name);
+
+        if (id == -1)
+            id = insert(name, name.hashCode());
+
+        return id;
+    }
+
+    // Returns the id for the symbol held in buffer[start .. start + length - 1], adding it to the table if needed
+    public int add(char[] buffer, int start, int length) {
+        int hash = 0, mask = slots.length - 1;
+
+        // Same hash as String.hashCode(), so both lookups land on the same slots
+        for (int x = start; x < start + length; x++)
+            hash = 31 * hash + buffer[x];
+
+        for (int slot = hash & mask; slots[slot] != 0; slot = (slot + 1) & mask) {
+            int id = slots[slot] - 1;
+
+            if (hashes[id] == hash && matches(symbols[id], buffer, start, length))
+                return id;
+        }
+
+        return insert(new String(buffer, start, length), hash);
+    }
+
+    private static boolean matches(String symbol, char[] buffer, int start, int length) {
+        if (symbol.length() != length)
+            return false;
+
+        for (int x = 0; x < length; x++) {
+            if (symbol.charAt(x) != buffer[start + x])
+                return false;
+        }
+
+        return true;
+    }
+
+    private int insert(String name, int hash) {
+        if (count == symbols.length) {
+            String[] moreSymbols = new String[count * 2];
+            System.arraycopy(symbols, 0, moreSymbols, 0, count);
+            symbols = moreSymbols;
+
+            int[] moreHashes = new int[count * 2];
+            System.arraycopy(hashes, 0, moreHashes, 0, count);
+            hashes = moreHashes;
+        }
+
+        symbols[count] = name;
+        hashes[count] = hash;
+        count++;
+
+        // Keep the table at most half full
+        if (count * 2 > slots.length) {
+            slots = new int[slots.length * 2];
+
+            for (int id = 0; id < count; id++)
+                place(id);
+        } else {
+            place(count - 1);
+        }
+
+        return count - 1;
+    }
+
+    private void place(int id) {
+        int mask = slots.length - 1, slot = hashes[id] & mask;
+
+        while (slots[slot] != 0)
+            slot = (slot + 1) & mask;
+
+        slots[slot] = id + 1;
+    }
+}
\ No newline at end of file
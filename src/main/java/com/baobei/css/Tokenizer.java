@@ -7,6 +7,12 @@ package com.baobei.css;
 
 import java.io.Reader;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
 
 public class Tokenizer {
     static final int BAR = 0; // |
@@ -30,219 +36,294 @@ public class Tokenizer {
     static final int TILDE = 19;
     static final int ERROR = 20; // Syntax error found in the tokenizer
 
+    static final int BUFFER_SIZE = 8192; // Size of the refillable buffer used for streamed input
+
+    // Character classes used by getNext().  Characters that are tokens on their own map to the token type.
+    private static final byte CHAR_IDENTIFIER = 32;
+    private static final byte CHAR_SLASH = 33; // Part of an identifier, but may also start a comment
+    private static final byte CHAR_SPACE = 34;
+    private static final byte CHAR_NEWLINE = 35;
+    private static final byte CHAR_QUOTE = 36;
+
+    private static final byte[] CHARACTERS = new byte[128];
+
+    static {
+        for (int x = 0; x < CHARACTERS.length; x++)
+            CHARACTERS[x] = CHAR_IDENTIFIER;
+
+        CHARACTERS['|'] = BAR;
+        CHARACTERS['{'] = BRACE_LEFT;
+        CHARACTERS['}'] = BRACE_RIGHT;
+        CHARACTERS['['] = BRACKET_LEFT;
+        CHARACTERS[']'] = BRACKET_RIGHT;
+        CHARACTERS['^'] = CARET;
+        CHARACTERS[':'] = COLON;
+        CHARACTERS[','] = COMMA;
+        CHARACTERS['$'] = DOLLAR;
+        CHARACTERS['='] = EQUALS;
+        CHARACTERS['>'] = GREATHER_THAN;
+        CHARACTERS['('] = PAREN_LEFT;
+        CHARACTERS[')'] = PAREN_RIGHT;
+        CHARACTERS['+'] = PLUS;
+        CHARACTERS[';'] = SEMICOLON;
+        CHARACTERS['*'] = STAR;
+        CHARACTERS['~'] = TILDE;
+        CHARACTERS['/'] = CHAR_SLASH;
+        CHARACTERS[' '] = CHAR_SPACE;
+        CHARACTERS['\t'] = CHAR_SPACE;
+        CHARACTERS['\r'] = CHAR_NEWLINE;
+        CHARACTERS['\n'] = CHAR_NEWLINE;
+        CHARACTERS['"'] = CHAR_QUOTE;
+        CHARACTERS['\''] = CHAR_QUOTE;
+    }
+
     public int line = 1;
     private int offset;
+    private int limit;
+
+    private Reader input; // null when the whole source is already held in the buffer
+    private ByteBuffer bytes; // Encoded input (ie. a memory-mapped file) that is decoded into the buffer as needed
+    private CharsetDecoder decoder;
+
+    // Text of the last token is a span within the buffer.  Strings are only created when the parser keeps them.
+    char[] buffer;
+    int start;
+    int length;
+    private String message; // Description of the last ERROR token
+    long chars; // Chars of input taken in so far, for ParseMetrics
+
+    Tokenizer(String source) {
+        this.buffer = source.toCharArray();
+        this.limit = this.buffer.length;
+        this.chars = this.limit;
+    }
 
-    int getNext(String reader, StringBuffer data, char[] back) throws IOException {
-        char character = 0;
-        boolean found = false, inComment = false; // , inCommentLine = false;
-        int token = -1;
-        boolean lookBack = (back[0] != 0);
-
-        if (lookBack)
-            character = back[0];
-
-        while (!found && (lookBack || offset < reader.length())) {
-            if (!lookBack)
-                character = reader.charAt(offset++);
-            else
-                lookBack = false;
-
-            if (character != '\n' && character != '\r') {
-                //System.out.println(character);
-
-                if (!inComment) {
-                    switch (character) {
-                        case ' ':
-                        case '\t':
-                            if (token == -1)
-                                continue;
-                            else if (token == IDENTIFIER)
-                                found = true;
-                            break;
-
-                        case ';':
-                            if (token == -1)
-                                token = SEMICOLON;
-
-                            found = (token != STRING);
-                            break;
+    // Tokenize source[offset .. limit - 1], counting lines from line.  The array is only read, so
+    // several Tokenizers can share it.
+    Tokenizer(char[] source, int offset, int limit, int line) {
+        this.buffer = source;
+        this.offset = offset;
+        this.limit = limit;
+        this.line = line;
+        this.chars = limit - offset;
+    }
 
-                        case ':':
-                            if (token == -1)
-                                token = COLON;
+    Tokenizer(Reader input) {
+        this(input, BUFFER_SIZE);
+    }
 
-                            found = (token != STRING);
-                            break;
+    Tokenizer(Reader input, int bufferSize) {
+        this.input = input;
+        this.buffer = new char[bufferSize];
+    }
 
-                        case '{':
-                            if (token == -1)
-                                token = BRACE_LEFT;
+    // UTF-8 (or plain ASCII) bytes are decoded straight from the byte buffer, without an intermediate String
+    Tokenizer(ByteBuffer bytes) {
+        this(bytes, BUFFER_SIZE);
+    }
 
-                            found = (token != STRING);
-                            break;
+    Tokenizer(ByteBuffer bytes, int bufferSize) {
+        this.bytes = bytes;
+        this.buffer = new char[bufferSize];
+        this.decoder = Charset.forName("UTF-8").newDecoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    }
 
-                        case '}':
-                            if (token == -1)
-                                token = BRACE_RIGHT;
+    // Refill the buffer from the input stream.  Returns false when there is nothing left to read.
+    // 
+    // The text of the token being scanned is moved to the front of the buffer first, so it stays one span.
+    private boolean fill() throws IOException {
+        int count = -1, keep = 0;
 
-                            found = (token != STRING);
-                            break;
+        if (input == null && bytes == null)
+            return false;
 
-                        case '>':
-                            if (token == -1)
-                                token = GREATHER_THAN;
+        if (length != 0) {
+            keep = length;
 
-                            found = (token != STRING);
-                            break;
+            if (keep == buffer.length) {
+                char[] larger = new char[buffer.length * 2];
+                System.arraycopy(buffer, start, larger, 0, keep);
+                buffer = larger;
+            } else {
+                System.arraycopy(buffer, start, buffer, 0, keep);
+            }
 
-                        case '[':
-                            if (token == -1)
-                                token = BRACKET_LEFT;
+            start = 0;
+        }
 
-                            found = (token != STRING);
-                            break;
+        if (input != null) {
+            do {
+                count = input.read(buffer, keep, buffer.length - keep);
+            } while (count == 0);
 
-                        case ']':
-                            if (token == -1)
-                                token = BRACKET_RIGHT;
+            if (count == -1)
+                input = null;
 
-                            found = (token != STRING);
-                            break;
+        } else if (bytes != null) {
+            for (;;) {
+                CharBuffer chars = CharBuffer.wrap(buffer, keep, buffer.length - keep);
+                CoderResult result = decoder.decode(bytes, chars, true);
 
-                        case '(':
-                            if (token == -1)
-                                token = PAREN_LEFT;
+                if (!bytes.hasRemaining()) {
+                    decoder.flush(chars);
+                    bytes = null;
+                }
 
-                            found = (token != STRING);
-                            break;
+                count = chars.position() - keep;
+                if (count != 0 || !result.isOverflow())
+                    break;
 
-                        case ')':
-                            if (token == -1)
-                                token = PAREN_RIGHT;
+                // One char is left free, but the next character is a surrogate pair
+                char[] larger = new char[buffer.length * 2];
+                System.arraycopy(buffer, 0, larger, 0, keep);
+                buffer = larger;
+            }
+        }
 
-                            found = (token != STRING);
-                            break;
+        if (count <= 0)
+            return false;
 
-                        case ',':
-                            if (token == -1)
-                                token = COMMA;
+        offset = keep;
+        limit = keep + count;
+        chars += count;
 
-                            found = (token != STRING);
-                            break;
+        return true;
+    }
 
-                        case '=':
-                            if (token == -1)
-                                token = EQUALS;
+    // Text of the last token, or the error description for an ERROR token
+    String text() {
+        if (message != null)
+            return message;
 
-                            found = (token != STRING);
-                            break;
+        return new String(buffer, start, length);
+    }
 
-                        case '|':
-                            if (token == -1)
-                                token = BAR;
+    int getNext() throws IOException {
+        char character;
+        int type;
+
+        length = 0;
+        message = null;
+
+        scan:
+        for (;;) {
+            if (offset == limit && !fill())
+                return -1;
+
+            character = buffer[offset++];
+            type = (character < 128 ? CHARACTERS[character] : CHAR_IDENTIFIER);
+
+            switch (type) {
+                case CHAR_SPACE:
+                    continue;
+
+                case CHAR_NEWLINE:
+                    if (character == '\n')
+                        line++;
+                    continue;
+
+                case CHAR_QUOTE:
+                    return getString(character);
+
+                case CHAR_IDENTIFIER:
+                case CHAR_SLASH:
+                    start = offset - 1;
+                    length = 1;
+
+                    // An identifier runs until whitespace, a quote or a single character token
+                    for (;;) {
+                        if (offset == limit && !fill())
+                            return IDENTIFIER;
+
+                        character = buffer[offset];
+                        type = (character < 128 ? CHARACTERS[character] : CHAR_IDENTIFIER);
+
+                        if (type == CHAR_IDENTIFIER || type == CHAR_SLASH) {
+                            offset++;
+                            length++;
+
+                        } else if (type == STAR && buffer[offset - 1] == '/') {
+                            // Start comment block /* ... */, which discards the identifier in front of it
+                            offset++;
+                            length = 0;
+
+                            if (!skipComment())
+                                return -1;
+                            continue scan;
+
+                        } else if (type == CHAR_QUOTE) {
+                            offset++;
+                            message = "Unexpected string character";
+                            return ERROR;
+
+                        } else {
+                            // Whitespace is consumed, single character tokens are left for the next call
+                            if (type == CHAR_SPACE) {
+                                offset++;
+                            } else if (type == CHAR_NEWLINE) {
+                                offset++;
+                                if (character == '\n')
+                                    line++;
+                            }
 
-                            found = (token != STRING);
-                            break;
+                            return IDENTIFIER;
+                        }
+                    }
 
-                        case '^':
-                            if (token == -1)
-                                token = CARET;
+                default:
+                    return type;
+            }
+        }
+    }
 
-                            found = (token != STRING);
-                            break;
+    // String is closed by the same quote character that opened it
+    private int getString(char quote) throws IOException {
+        char character;
 
-                        case '$':
-                            if (token == -1)
-                                token = DOLLAR;
+        start = offset;
 
-                            found = (token != STRING);
-                            break;
+        for (;;) {
+            if (offset == limit && !fill())
+                return STRING;
 
-                        case '~':
-                            if (token == -1)
-                                token = TILDE;
+            character = buffer[offset++];
 
-                            found = (token != STRING);
-                            break;
+            if (character == quote)
+                return STRING;
 
-                        case '+':
-                            if (token == -1)
-                                token = PLUS;
+            if (character == '\n' || character == '\r') {
+                message = "String cannot extend to new line";
+                return ERROR;
+            }
 
-                            found = (token != STRING);
-                            break;
+            if (length++ == 0)
+                start = offset - 1;
+        }
+    }
 
-                        // Start comment block /* ... */
-                        case '*':
-                            if (token != STRING) {
-                                if (back[0] == '/') {
-                                    token = -1;
-                                    inComment = true;
-                                } else {
-                                    if (token == -1)
-                                        token = STAR;
+    // Skip to the end of a comment block.  Returns false if the input ends first.
+    private boolean skipComment() throws IOException {
+        char character, last = 0;
 
-                                    found = true;
-                                }
-                            }
-                            break;
-
-                        case '"':
-                        case '\'':
-                            if (token == -1 || token == STRING) {
-                                if (token == -1) {
-                                    token = STRING;
-                                    continue;
-                                } else
-                                    found = true;
-                            } else {
-                                token = ERROR;
-                                found = true;
-
-                                data.setLength(0);
-                                data.append("Unexpected string character");
-                            }
-                            break;
+        for (;;) {
+            if (offset == limit && !fill())
+                return false;
 
-                        default:
-                            if (token == -1)
-                                token = IDENTIFIER;
-                            break;
-                    }
+            while (offset < limit) {
+                character = buffer[offset++];
 
-                    if (!found)
-                        data.append(character);
-                }
-                // End comment block /* ... */
-                else if (character == '/' && back[0] == '*') {
-                    inComment = false;
-                    data.setLength(0);
-                }
-            } else {
-                if (character == '\r') {
+                if (character == '/') {
+                    if (last == '*')
+                        return true;
+                } else if (character == '\n') {
                     line++;
-                    if (token == STRING) {
-                        token = ERROR;
-                        found = true;
-
-                        data.setLength(0);
-                        data.append("String cannot extend to new line");
-                    }
                 }
 
-                if (token != -1)
-                    found = true;
+                last = character;
             }
-
-            back[0] = character;
         }
-
-        // No look back needed for non-identifiers
-        if (token != IDENTIFIER)
-            back[0] = 0;
-
-        return token;
     }
 
     static String getToken(int token) {
@@ -0,0 +1,19 @@
+/*
+ * A function that can be used in CSS values, ie. saturation(#ffffff, 40%)
+ *
+ * Functions are looked up by name in a FunctionRegistry.
+ */
+package com.baobei.css.model;
+
+import java.util.List;
+
+public interface CssFunction {
+    // Evaluate the function.  The result is returned as a RuleValue, so callers read it with the
+    // usual getters (get(), getColor(), getInt()).  args is null for a call without arguments, and
+    // read-only for values in a Stylesheet.
+    RuleValue call(List<RuleValue> args) throws Exception;
+
+    // True if the result depends only on the arguments.  Such calls with literal arguments are
+    // evaluated once when the stylesheet is compiled.
+    boolean isConstant();
+}
\ No newline at end of file
@@ -0,0 +1,118 @@
+/*
+ * Functions available to CSS values, by name
+ *
+ * The default registry holds the built-in functions:
+ *
+ *   url("image.png")               -> its argument
+ *   saturation(#ffffff, 40%)       -> a lighter or darker color, see Color.saturation()
+ *
+ * Calls to constant functions whose arguments are all literals (or calls that were folded
+ * themselves) are evaluated once by fold(), and the result is kept in the RuleValue.
+ */
+package com.baobei.css.model;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+public class FunctionRegistry {
+    private final ConcurrentHashMap<String, CssFunction> functions = new ConcurrentHashMap<String, CssFunction>();
+
+    private static final CssFunction URL = new CssFunction() {
+        public RuleValue call(List<RuleValue> args) throws Exception {
+            if (args == null || args.size() != 1)
+                throw new Exception("Incorrect # of arguments for url()");
+
+            return args.get(0);
+        }
+
+        public boolean isConstant() {
+            return true;
+        }
+    };
+
+    private static final CssFunction SATURATION = new CssFunction() {
+        public RuleValue call(List<RuleValue> args) throws Exception {
+            if (args == null)
+                throw new Exception("Incorrect # of arguments for saturation()");
+
+            RuleValue result = new RuleValue();
+            result.setColorName(toHex(Color.saturation(args)));
+
+            return result;
+        }
+
+        public boolean isConstant() {
+            return true;
+        }
+    };
+
+    // Created after the built-in functions above
+    private static final FunctionRegistry DEFAULT = new FunctionRegistry();
+
+    // Registry with the built-in functions
+    public FunctionRegistry() {
+        register("url", URL);
+        register("saturation", SATURATION);
+    }
+
+    // Registry used by Parser unless it is given another one.  Functions registered here are
+    // seen by every parser.
+    public static FunctionRegistry getDefault() {
+        return DEFAULT;
+    }
+
+    // Add a function, or replace the one with the same name
+    public void register(String name, CssFunction function) {
+        functions.put(name, function);
+    }
+
+    public void unregister(String name) {
+        functions.remove(name);
+    }
+
+    // Function for a name, or null if there is none
+    public CssFunction get(String name) {
+        return functions.get(name);
+    }
+
+    // Bind the function values of a Rule to this registry, folding the ones that are constant
+    public void fold(Rule rule) {
+        for (int x = 0; x < rule.getValueCount(); x++)
+            fold(rule.getValue(x));
+    }
+
+    // Returns true if the value is a literal, or a function call that could be folded
+    private boolean fold(RuleValue value) {
+        if (value.type != RuleValue.TYPE_FUNCTION)
+            return true;
+
+        boolean literal = true;
+
+        // Arguments first, so nested calls fold from the inside out
+        for (int x = 0; x < value.getArgCount(); x++)
+            literal &= fold(value.getArg(x));
+
+        CssFunction function = get(value.getName());
+        value.setFunction(function);
+
+        if (function == null || !literal || !function.isConstant())
+            return false;
+
+        try {
+            value.setFolded(function.call(value.getArgs()));
+            return true;
+        } catch (Exception e) {
+            // Left to fail again, with the same error, when the value is read
+            return false;
+        }
+    }
+
+    private static String toHex(int rgb) {
+        String hex = Integer.toHexString(rgb & 0xffffff);
+
+        while (hex.length() < 6)
+            hex = "0" + hex;
+
+        return hex;
+    }
+}
\ No newline at end of file
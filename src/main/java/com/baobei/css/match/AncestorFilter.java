@@ -0,0 +1,120 @@
+/*
+ * Counting Bloom filter holding the tag names, ids and classes of the ancestors of the element
+ * being matched
+ *
+ * It is kept up to date during a depth-first walk of the tree: push an element before visiting
+ * its children and pop it afterwards.  A selector like "div.sidebar ul a" needs "div", ".sidebar"
+ * and "ul" on its ancestors, so if any of them is definitely missing from the filter the selector
+ * is rejected without walking up the tree.
+ *
+ * Each hash sets two 8-bit counters, taken from the low and high 12 bits of the hash.
+ */
+package com.baobei.css.match;
+
+import java.util.ArrayList;
+
+public class AncestorFilter {
+    static final int MAX_HASHES = 4; // Most hashes kept for each selector path
+
+    private static final int BITS = 12;
+    private static final int MASK = (1 << BITS) - 1;
+
+    // Different salts so the tag "item" and the class "item" give different hashes
+    private static final int SALT_TAG = 0x2f63a1d5;
+    private static final int SALT_ID = 0x5bd1e995;
+    private static final int SALT_CLASS = 0x1b873593;
+
+    private final byte[] counters = new byte[1 << BITS];
+    private final ArrayList<Node> parents = new ArrayList<Node>(32);
+
+    static int hashTag(String name) {
+        return mix(name.hashCode() * SALT_TAG);
+    }
+
+    static int hashId(String id) {
+        return mix(id.hashCode() * SALT_ID);
+    }
+
+    static int hashClass(String name) {
+        return mix(name.hashCode() * SALT_CLASS);
+    }
+
+    private static int mix(int hash) {
+        hash ^= hash >>> 16;
+        hash *= 0x85ebca6b;
+        return hash ^ (hash >>> 13);
+    }
+
+    // Number of ancestors in the filter
+    public int getDepth() {
+        return parents.size();
+    }
+
+    // Add an element before visiting its children
+    public void push(Node node) {
+        parents.add(node);
+        update(node, 1);
+    }
+
+    // Remove the element that was pushed last, after visiting its children
+    public void pop() {
+        update(parents.remove(parents.size() - 1), -1);
+    }
+
+    // Fill the filter with the ancestors of a node, for matching outside of a tree walk
+    public void setParents(Node node) {
+        while (!parents.isEmpty())
+            pop();
+
+        ArrayList<Node> ancestors = new ArrayList<Node>();
+        for (Node parent = node.getParent(); parent != null; parent = parent.getParent())
+            ancestors.add(parent);
+
+        for (int x = ancestors.size() - 1; x >= 0; x--)
+            push(ancestors.get(x));
+    }
+
+    // False means no ancestor has the name, id or class for this hash.  True may be wrong.
+    public boolean mayContain(int hash) {
+        return counters[hash & MASK] != 0 && counters[(hash >>> BITS) & MASK] != 0;
+    }
+
+    // True if every hash may be on an ancestor
+    boolean mayContainAll(int[] hashes) {
+        for (int x = 0; x < hashes.length; x++) {
+            if (!mayContain(hashes[x]))
+                return false;
+        }
+
+        return true;
+    }
+
+    private void update(Node node, int change) {
+        String name = node.getName();
+        if (name != null)
+            update(hashTag(name), change);
+
+        String id = node.getId();
+        if (id != null)
+            update(hashId(id), change);
+
+        String[] classes = node.getClasses();
+        if (classes != null) {
+            for (int x = 0; x < classes.length; x++)
+                update(hashClass(classes[x]), change);
+        }
+    }
+
+    private void update(int hash, int change) {
+        updateSlot(hash & MASK, change);
+        updateSlot((hash >>> BITS) & MASK, change);
+    }
+
+    // Counters stick at 255 once they overflow, so they can never wrongly fall back to 0
+    private void updateSlot(int slot, int change) {
+        int count = counters[slot] & 0xff;
+
+        if (count != 0xff)
+            counters[slot] = (byte) (count + change);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,196 @@
+/*
+ * Simple in-memory Node, used for testing and benchmarking without an external DOM
+ *
+ * Structural pseudos (first-child, last-child, only-child, nth-child, empty) are worked out from
+ * the tree.  Any other pseudo, ie. hover or lang(en), matches only when it was set with setPseudo().
+ */
+package com.baobei.css.match;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+
+public class Element implements Node {
+    private String name;
+    private String id;
+    private String[] classes;
+    private HashMap<String, String> attributes;
+    private HashSet<String> pseudos;
+    private Element parent, previous, next, firstChild, lastChild;
+
+    public Element(String name) {
+        this.name = name;
+    }
+
+    // Add a child to the end of this element's children.  Returns the child.
+    public Element append(Element child) {
+        child.parent = this;
+        child.previous = lastChild;
+
+        if (lastChild != null)
+            lastChild.next = child;
+        else
+            firstChild = child;
+
+        lastChild = child;
+
+        return child;
+    }
+
+    public Element setId(String id) {
+        this.id = id;
+        return this;
+    }
+
+    public Element addClass(String name) {
+        if (classes == null) {
+            classes = new String[] { name };
+        } else {
+            String[] more = new String[classes.length + 1];
+            System.arraycopy(classes, 0, more, 0, classes.length);
+            more[classes.length] = name;
+            classes = more;
+        }
+
+        return this;
+    }
+
+    public Element setAttribute(String name, String value) {
+        if (attributes == null)
+            attributes = new HashMap<String, String>(4);
+
+        attributes.put(name, value);
+        return this;
+    }
+
+    // Turn a state pseudo on or off, ie. setPseudo("hover", null, true) or setPseudo("lang", "en", true)
+    public Element setPseudo(String pseudo, String arg, boolean on) {
+        String key = (arg == null ? pseudo : pseudo + "(" + arg + ")");
+
+        if (on) {
+            if (pseudos == null)
+                pseudos = new HashSet<String>(4);
+            pseudos.add(key);
+        } else if (pseudos != null) {
+            pseudos.remove(key);
+        }
+
+        return this;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String[] getClasses() {
+        return classes;
+    }
+
+    public String getAttribute(String name) {
+        if (name.equals("id"))
+            return id;
+
+        if (name.equals("class") && classes != null) {
+            StringBuilder result = new StringBuilder();
+            for (int x = 0; x < classes.length; x++) {
+                if (x != 0)
+                    result.append(' ');
+                result.append(classes[x]);
+            }
+            return result.toString();
+        }
+
+        return (attributes == null ? null : attributes.get(name));
+    }
+
+    public Node getParent() {
+        return parent;
+    }
+
+    public Node getPreviousSibling() {
+        return previous;
+    }
+
+    public Node getNextSibling() {
+        return next;
+    }
+
+    public Node getFirstChild() {
+        return firstChild;
+    }
+
+    public boolean hasPseudo(String pseudo, String arg) {
+        if (arg == null) {
+            if (pseudo.equals("first-child"))
+                return previous == null;
+
+            if (pseudo.equals("last-child"))
+                return next == null;
+
+            if (pseudo.equals("only-child"))
+                return previous == null && next == null;
+
+            if (pseudo.equals("empty"))
+                return firstChild == null;
+
+        } else if (pseudo.equals("nth-child")) {
+            int index = 1;
+            for (Element sibling = previous; sibling != null; sibling = sibling.previous)
+                index++;
+
+            return matchesNth(arg, index);
+        }
+
+        return pseudos != null && pseudos.contains(arg == null ? pseudo : pseudo + "(" + arg + ")");
+    }
+
+    // Does a 1-based index match an+b, "odd" or "even"
+    static boolean matchesNth(String arg, int index) {
+        int a, b;
+
+        arg = arg.trim();
+        if (arg.equals("odd")) {
+            a = 2;
+            b = 1;
+        } else if (arg.equals("even")) {
+            a = 2;
+            b = 0;
+        } else {
+            int n = arg.indexOf('n');
+
+            try {
+                if (n == -1) {
+                    a = 0;
+                    b = Integer.parseInt(arg);
+                } else {
+                    String first = arg.substring(0, n);
+
+                    if (first.length() == 0 || first.equals("+"))
+                        a = 1;
+                    else if (first.equals("-"))
+                        a = -1;
+                    else
+                        a = Integer.parseInt(first);
+
+                    String last = arg.substring(n + 1);
+                    if (last.startsWith("+"))
+                        last = last.substring(1);
+
+                    b = (last.length() == 0 ? 0 : Integer.parseInt(last));
+                }
+            } catch (NumberFormatException e) {
+                return false;
+            }
+        }
+
+        if (a == 0)
+            return index == b;
+
+        // index = a * n + b, for some n >= 0
+        return (index - b) % a == 0 && (index - b) / a >= 0;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,44 @@
+/*
+ * Flight Recorder event for the selector matching done by one StyleResolver.resolveTree()
+ *
+ * Matching a single element is too short to record on its own, so this carries the totals for
+ * every element of the tree that was matched rather than shared.  The matching is spread over the
+ * whole resolve, so the event is not timed itself: Match Time is the time spent in the matcher,
+ * to set against the duration of the Resolve event.
+ */
+package com.baobei.css.match;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+@Name("com.baobei.css.Match")
+@Label("CSS Match")
+@Category("CSS")
+@Description("Matching of the elements of a tree against the selectors of a stylesheet")
+@StackTrace(false)
+public final class MatchEvent extends jdk.jfr.Event {
+    @Label("Match Time")
+    @Description("Time spent in the selector matcher, for all elements")
+    @Timespan(Timespan.NANOSECONDS)
+    long matchTime;
+
+    @Label("Elements")
+    @Description("Elements matched against the stylesheet")
+    long elements;
+
+    @Label("Selectors")
+    @Description("Selector paths in the stylesheet's RuleIndex")
+    int selectors;
+
+    @Label("Candidates")
+    @Description("Paths that the index could not rule out, for all elements")
+    long candidates;
+
+    @Label("Matched")
+    @Description("Paths that matched, for all elements")
+    long matched;
+}
\ No newline at end of file
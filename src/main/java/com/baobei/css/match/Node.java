@@ -0,0 +1,32 @@
+/*
+ * Element of a document tree that selectors are matched against
+ *
+ * Implement this over your own DOM.  Element is a simple in-memory implementation.
+ */
+package com.baobei.css.match;
+
+public interface Node {
+    // Tag name, ie. "div"
+    String getName();
+
+    // Value of the id attribute, or null
+    String getId();
+
+    // Class names, or null if there are none
+    String[] getClasses();
+
+    // Value of an attribute, or null if it is not set
+    String getAttribute(String name);
+
+    Node getParent();
+
+    Node getPreviousSibling();
+
+    Node getNextSibling();
+
+    Node getFirstChild();
+
+    // Test a pseudo-class for this element, ie. ("hover", null) or ("nth-child", "2n+1").  Pseudos
+    // that the DOM does not know about should not match.
+    boolean hasPseudo(String pseudo, String arg);
+}
\ No newline at end of file
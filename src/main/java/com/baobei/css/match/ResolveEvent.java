@@ -0,0 +1,33 @@
+/*
+ * Flight Recorder event for resolving the Styles of a tree of elements with
+ * StyleResolver.resolveTree()
+ */
+package com.baobei.css.match;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Name("com.baobei.css.Resolve")
+@Label("CSS Resolve")
+@Category("CSS")
+@Description("Resolution of the Styles of every element under a root")
+@StackTrace(false)
+public final class ResolveEvent extends jdk.jfr.Event {
+    @Label("Elements")
+    int elements;
+
+    @Label("Selectors")
+    @Description("Selectors in the stylesheet")
+    int selectors;
+
+    @Label("Shared")
+    @Description("Styles found in the resolver's cache instead of being matched")
+    long hits;
+
+    @Label("Matched")
+    @Description("Elements matched against the stylesheet")
+    long matched;
+}
\ No newline at end of file
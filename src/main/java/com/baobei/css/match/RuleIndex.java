@@ -0,0 +1,266 @@
+/*
+ * Index of the selector paths in a Stylesheet, bucketed by the rightmost part of each path
+ *
+ * Each path is an entry, numbered in source order.  It goes into exactly one bucket, picked from
+ * its rightmost Tag:
+ *
+ *   a > b#main      -> id bucket "main"
+ *   ul li.item      -> class bucket "item"
+ *   ul li           -> tag bucket "li"
+ *   a > *, [href]   -> universal bucket
+ *
+ * Looking up an element only touches the buckets for its id, its classes, its tag name and the
+ * universal bucket, so the candidates do not grow with the size of the stylesheet.
+ */
+package com.baobei.css.match;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import com.baobei.css.model.*;
+
+public class RuleIndex {
+    static final int BUCKET_UNIVERSAL = 0;
+    static final int BUCKET_TAG = 1;
+    static final int BUCKET_CLASS = 2;
+    static final int BUCKET_ID = 3;
+
+    private final Stylesheet sheet;
+    private final int[] selectors; // Selector for each entry
+    private final int[] paths; // Path for each entry
+    private final int[][] ancestorHashes; // Names, ids and classes each entry needs on its ancestors
+    private final HashMap<String, int[]> ids = new HashMap<String, int[]>();
+    private final HashMap<String, int[]> classes = new HashMap<String, int[]>();
+    private final HashMap<String, int[]> tags = new HashMap<String, int[]>();
+    private final int[] universal;
+
+    // Candidate entries for an element, sorted in source order.  Reuse one for every lookup.
+    public static class Candidates {
+        int[] entries = new int[16];
+        int count;
+
+        public int size() {
+            return count;
+        }
+
+        public int get(int index) {
+            return entries[index];
+        }
+
+        void add(int[] bucket) {
+            if (count + bucket.length > entries.length)
+                entries = Arrays.copyOf(entries, Math.max(entries.length * 2, count + bucket.length));
+
+            System.arraycopy(bucket, 0, entries, count, bucket.length);
+            count += bucket.length;
+        }
+    }
+
+    public RuleIndex(Stylesheet sheet) {
+        this.sheet = sheet;
+
+        int count = 0;
+        for (int x = 0; x < sheet.getSelectorCount(); x++)
+            count += sheet.getPathCount(x);
+
+        this.selectors = new int[count];
+        this.paths = new int[count];
+        this.ancestorHashes = new int[count][];
+
+        HashMap<String, ArrayList<Integer>> ids = new HashMap<String, ArrayList<Integer>>();
+        HashMap<String, ArrayList<Integer>> classes = new HashMap<String, ArrayList<Integer>>();
+        HashMap<String, ArrayList<Integer>> tags = new HashMap<String, ArrayList<Integer>>();
+        ArrayList<Integer> universal = new ArrayList<Integer>();
+
+        int entry = 0;
+        for (int x = 0; x < sheet.getSelectorCount(); x++) {
+            for (int y = 0; y < sheet.getPathCount(x); y++) {
+                selectors[entry] = x;
+                paths[entry] = y;
+                ancestorHashes[entry] = getAncestorHashes(sheet, x, y);
+
+                int last = sheet.getTagCount(x, y) - 1;
+                String key = sheet.getTag(x, y, last).name;
+
+                switch (getBucket(sheet, x, y)) {
+                    case BUCKET_ID:
+                        add(ids, key, entry);
+                        break;
+
+                    case BUCKET_CLASS:
+                        add(classes, key, entry);
+                        break;
+
+                    case BUCKET_TAG:
+                        add(tags, key, entry);
+                        break;
+
+                    default:
+                        universal.add(entry);
+                        break;
+                }
+
+                entry++;
+            }
+        }
+
+        copy(ids, this.ids);
+        copy(classes, this.classes);
+        copy(tags, this.tags);
+        this.universal = toArray(universal);
+    }
+
+    // Which bucket a path goes into, based on its rightmost Tag.  The Tag before it carries the
+    // relation, ie. "li.item" is parsed into "li" (RELATION_CLASS) followed by "item".
+    static int getBucket(Stylesheet sheet, int selector, int path) {
+        int last = sheet.getTagCount(selector, path) - 1;
+        Tag tag = sheet.getTag(selector, path, last);
+
+        if (tag.name == null)
+            return BUCKET_UNIVERSAL;
+
+        if (last > 0) {
+            switch (sheet.getTag(selector, path, last - 1).relation) {
+                case Tag.RELATION_ID:
+                    return BUCKET_ID;
+
+                case Tag.RELATION_CLASS:
+                    return BUCKET_CLASS;
+            }
+        }
+
+        return BUCKET_TAG;
+    }
+
+    // Hashes for the compounds of a path that have to match an ancestor of the element.  Those are
+    // the compounds on the left of a child or descendant combinator.  Compounds on the left of a
+    // sibling combinator match siblings, so they are left out.
+    static int[] getAncestorHashes(Stylesheet sheet, int selector, int path) {
+        int[] hashes = new int[AncestorFilter.MAX_HASHES];
+        int count = 0;
+        boolean ancestor = false;
+
+        for (int x = sheet.getTagCount(selector, path) - 1; x >= 0 && count < hashes.length; x--) {
+            Tag tag = sheet.getTag(selector, path, x);
+            int relation = (x > 0 ? sheet.getTag(selector, path, x - 1).relation : Tag.RELATION_UNDEFINED);
+
+            if (ancestor && tag.name != null) {
+                switch (relation) {
+                    case Tag.RELATION_CLASS:
+                        hashes[count++] = AncestorFilter.hashClass(tag.name);
+                        break;
+
+                    case Tag.RELATION_ID:
+                        hashes[count++] = AncestorFilter.hashId(tag.name);
+                        break;
+
+                    default:
+                        hashes[count++] = AncestorFilter.hashTag(tag.name);
+                        break;
+                }
+            }
+
+            // A relation other than class or id ends the compound.  It is the combinator to the next compound on the left.
+            if (relation != Tag.RELATION_CLASS && relation != Tag.RELATION_ID)
+                ancestor = (relation != Tag.RELATION_SIBLING && relation != Tag.RELATION_SIBLING_ADJACENT);
+        }
+
+        int[] result = new int[count];
+        System.arraycopy(hashes, 0, result, 0, count);
+
+        return result;
+    }
+
+    private static void add(HashMap<String, ArrayList<Integer>> buckets, String key, int entry) {
+        ArrayList<Integer> bucket = buckets.get(key);
+
+        if (bucket == null) {
+            bucket = new ArrayList<Integer>(2);
+            buckets.put(key, bucket);
+        }
+
+        bucket.add(entry);
+    }
+
+    private static void copy(HashMap<String, ArrayList<Integer>> from, HashMap<String, int[]> to) {
+        for (Map.Entry<String, ArrayList<Integer>> bucket : from.entrySet())
+            to.put(bucket.getKey(), toArray(bucket.getValue()));
+    }
+
+    private static int[] toArray(ArrayList<Integer> list) {
+        int[] result = new int[list.size()];
+
+        for (int x = 0; x < result.length; x++)
+            result[x] = list.get(x);
+
+        return result;
+    }
+
+    public Stylesheet getStylesheet() {
+        return sheet;
+    }
+
+    // Number of entries (paths) in the index
+    public int getEntryCount() {
+        return selectors.length;
+    }
+
+    public int getSelector(int entry) {
+        return selectors[entry];
+    }
+
+    public int getPath(int entry) {
+        return paths[entry];
+    }
+
+    int[] getAncestorHashes(int entry) {
+        return ancestorHashes[entry];
+    }
+
+    public int getWeight(int entry) {
+        return sheet.getWeight(selectors[entry], paths[entry]);
+    }
+
+    // Collect the entries that could match an element.  Any of the arguments can be null.
+    public void getCandidates(String name, String id, String[] classNames, Candidates result) {
+        result.count = 0;
+
+        if (id != null)
+            add(ids, id, result);
+
+        if (classNames != null) {
+            for (int x = 0; x < classNames.length; x++)
+                add(classes, classNames[x], result);
+        }
+
+        if (name != null)
+            add(tags, name, result);
+
+        result.add(universal);
+
+        // Buckets are each in source order already, so only merged results need sorting
+        int count = result.count;
+        if (count > 1 && (universal.length != count)) {
+            int[] entries = result.entries;
+
+            Arrays.sort(entries, 0, count);
+
+            // Repeated class names would add the same bucket twice
+            int unique = 1;
+            for (int x = 1; x < count; x++) {
+                if (entries[x] != entries[unique - 1])
+                    entries[unique++] = entries[x];
+            }
+
+            result.count = unique;
+        }
+    }
+
+    private static void add(HashMap<String, int[]> buckets, String key, Candidates result) {
+        int[] bucket = buckets.get(key);
+
+        if (bucket != null)
+            result.add(bucket);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,259 @@
+/*
+ * Matches compiled selector paths against Nodes, from right to left
+ *
+ * A path is a chain of Tags.  Tags joined by RELATION_CLASS or RELATION_ID form one compound
+ * selector (ie. "li.item" is "li" followed by "item"), and the relation on the last Tag of a
+ * compound is the combinator to the compound on its right:
+ *
+ *   RELATION_UNDEFINED, RELATION_DESCENDANT     A B
+ *   RELATION_CHILD                              A > B
+ *   RELATION_SIBLING                            A ~ B
+ *   RELATION_SIBLING_ADJACENT                   A + B
+ *
+ * Matching starts with the rightmost compound against the element itself, so most candidates
+ * are rejected before any ancestor or sibling is looked at.
+ */
+package com.baobei.css.match;
+
+import com.baobei.css.model.*;
+
+public class SelectorMatcher {
+    private long filterChecks; // Candidates tested against an AncestorFilter
+    private long filterRejections; // Candidates the AncestorFilter rejected
+    private long elements; // Elements passed to match()
+    private long candidates; // Candidates match() got from the index
+    private long matched; // Candidates that match() kept
+
+    // Does the path of a selector match this element
+    public boolean matches(Stylesheet sheet, int selector, int path, Node node) {
+        int first = 0, last = sheet.getTagCount(selector, path) - 1;
+
+        // Paths after a comma can start with an empty Tag
+        while (first < last && isEmpty(sheet.getTag(selector, path, first)))
+            first++;
+
+        return matches(sheet, selector, path, first, last, node);
+    }
+
+    public boolean matches(RuleIndex index, int entry, Node node) {
+        return matches(index.getStylesheet(), index.getSelector(entry), index.getPath(entry), node);
+    }
+
+    // Same as matches(), but first rejects the entry if the ancestors it needs are not in the filter
+    public boolean matches(RuleIndex index, int entry, Node node, AncestorFilter filter) {
+        int[] hashes = index.getAncestorHashes(entry);
+
+        if (hashes.length != 0) {
+            filterChecks++;
+
+            if (!filter.mayContainAll(hashes)) {
+                filterRejections++;
+                return false;
+            }
+        }
+
+        return matches(index, entry, node);
+    }
+
+    // Keep only the candidates for an element that actually match it
+    public void match(RuleIndex index, Node node, RuleIndex.Candidates result) {
+        match(index, node, result, null);
+    }
+
+    // The filter must hold the ancestors of the element, or be null
+    public void match(RuleIndex index, Node node, RuleIndex.Candidates result, AncestorFilter filter) {
+        index.getCandidates(node.getName(), node.getId(), node.getClasses(), result);
+
+        int count = 0;
+        for (int x = 0; x < result.count; x++) {
+            int entry = result.entries[x];
+
+            if (filter != null ? matches(index, entry, node, filter) : matches(index, entry, node))
+                result.entries[count++] = entry;
+        }
+
+        elements++;
+        candidates += result.count;
+        matched += count;
+
+        result.count = count;
+    }
+
+    // Number of candidates that were tested against an AncestorFilter
+    public long getFilterChecks() {
+        return filterChecks;
+    }
+
+    // Number of candidates the AncestorFilter rejected without walking the tree
+    public long getFilterRejections() {
+        return filterRejections;
+    }
+
+    // Number of elements passed to match()
+    public long getElements() {
+        return elements;
+    }
+
+    // Number of candidates the index gave match(), before any were tested
+    public long getCandidates() {
+        return candidates;
+    }
+
+    // Number of candidates match() found to match
+    public long getMatched() {
+        return matched;
+    }
+
+    public void resetCounters() {
+        filterChecks = 0;
+        filterRejections = 0;
+        elements = 0;
+        candidates = 0;
+        matched = 0;
+    }
+
+    private boolean matches(Stylesheet sheet, int selector, int path, int first, int last, Node node) {
+        int start = last;
+
+        // Find the start of the compound that ends at the last Tag
+        while (start > first) {
+            int relation = sheet.getTag(selector, path, start - 1).relation;
+
+            if (relation != Tag.RELATION_CLASS && relation != Tag.RELATION_ID)
+                break;
+
+            start--;
+        }
+
+        if (!matchesCompound(sheet, selector, path, start, last, node))
+            return false;
+
+        if (start == first)
+            return true;
+
+        Node next;
+
+        switch (sheet.getTag(selector, path, start - 1).relation) {
+            case Tag.RELATION_CHILD:
+                next = node.getParent();
+                return next != null && matches(sheet, selector, path, first, start - 1, next);
+
+            case Tag.RELATION_SIBLING_ADJACENT:
+                next = node.getPreviousSibling();
+                return next != null && matches(sheet, selector, path, first, start - 1, next);
+
+            case Tag.RELATION_SIBLING:
+                for (next = node.getPreviousSibling(); next != null; next = next.getPreviousSibling()) {
+                    if (matches(sheet, selector, path, first, start - 1, next))
+                        return true;
+                }
+                return false;
+
+            default:
+                for (next = node.getParent(); next != null; next = next.getParent()) {
+                    if (matches(sheet, selector, path, first, start - 1, next))
+                        return true;
+                }
+                return false;
+        }
+    }
+
+    // Test every Tag of one compound against the element, rightmost first
+    private boolean matchesCompound(Stylesheet sheet, int selector, int path, int start, int last, Node node) {
+        for (int x = last; x >= start; x--) {
+            Tag tag = sheet.getTag(selector, path, x);
+
+            if (tag.name != null) {
+                int relation = (x > start ? sheet.getTag(selector, path, x - 1).relation : Tag.RELATION_UNDEFINED);
+
+                switch (relation) {
+                    case Tag.RELATION_CLASS:
+                        if (!hasClass(node, tag.name))
+                            return false;
+                        break;
+
+                    case Tag.RELATION_ID:
+                        if (!tag.name.equals(node.getId()))
+                            return false;
+                        break;
+
+                    default:
+                        if (!tag.name.equals(node.getName()))
+                            return false;
+                        break;
+                }
+            }
+
+            if (tag.attribKey != null && !matchesAttribute(tag, node.getAttribute(tag.attribKey)))
+                return false;
+
+            int count = tag.getPseudoCount();
+            for (int y = 0; y < count; y++) {
+                if (!node.hasPseudo(tag.getPseudo(y), tag.getPseudoArg(y)))
+                    return false;
+            }
+        }
+
+        return true;
+    }
+
+    private static boolean hasClass(Node node, String name) {
+        String[] classes = node.getClasses();
+
+        if (classes != null) {
+            for (int x = 0; x < classes.length; x++) {
+                if (name.equals(classes[x]))
+                    return true;
+            }
+        }
+
+        return false;
+    }
+
+    static boolean matchesAttribute(Tag tag, String value) {
+        if (value == null)
+            return false;
+
+        String expected = tag.attribValue;
+
+        switch (tag.attribMatch) {
+            case Tag.ATTRIB_EQUALS:
+                return value.equals(expected);
+
+            case Tag.ATTRIB_EQUALS_DASH:
+                return value.equals(expected) || (value.startsWith(expected) && value.length() > expected.length() && value.charAt(expected.length()) == '-');
+
+            case Tag.ATTRIB_LIST_WORD:
+                if (expected.length() == 0)
+                    return false;
+
+                for (int start = 0, length = value.length(); start < length;) {
+                    int end = start;
+                    while (end < length && !Character.isWhitespace(value.charAt(end)))
+                        end++;
+
+                    if (end - start == expected.length() && value.startsWith(expected, start))
+                        return true;
+
+                    start = end + 1;
+                }
+                return false;
+
+            case Tag.ATTRIB_BEGINS:
+                return expected.length() != 0 && value.startsWith(expected);
+
+            case Tag.ATTRIB_ENDS:
+                return expected.length() != 0 && value.endsWith(expected);
+
+            case Tag.ATTRIB_CONTAINS:
+                return expected.length() != 0 && value.indexOf(expected) != -1;
+
+            default:
+                return true;
+        }
+    }
+
+    private static boolean isEmpty(Tag tag) {
+        return tag.isEmpty() && tag.getPseudoCount() == 0;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,59 @@
+/*
+ * Resolved style of one element: the selector paths that matched it and the winning Rule for each
+ * property
+ *
+ * Styles are shared between equivalent elements by StyleResolver, so they are never changed after
+ * they are built.  The Rules and RuleValues belong to the Stylesheet and must be treated as read-only.
+ */
+package com.baobei.css.match;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Set;
+import com.baobei.css.model.*;
+
+public final class Style {
+    private final Style parent;
+    private final int[] entries; // Matching RuleIndex entries, in cascade order
+    private final HashMap<String, Rule> rules; // Winning Rule for each property name
+
+    Style(Style parent, int[] entries, HashMap<String, Rule> rules) {
+        this.parent = parent;
+        this.entries = entries;
+        this.rules = rules;
+    }
+
+    // Style of the parent element, or null for the root
+    public Style getParent() {
+        return parent;
+    }
+
+    // Number of selector paths that matched the element
+    public int getMatchCount() {
+        return entries.length;
+    }
+
+    // RuleIndex entry for a match.  Matches are sorted by weight, then by source order.
+    public int getEntry(int index) {
+        return entries[index];
+    }
+
+    // Rule that won the cascade for a property, or null if no selector sets it
+    public Rule getRule(String name) {
+        return rules.get(name);
+    }
+
+    // First value of the winning Rule for a property, or null
+    public RuleValue getValue(String name) {
+        Rule rule = rules.get(name);
+
+        if (rule == null || rule.getValueCount() == 0)
+            return null;
+
+        return rule.getValue(0);
+    }
+
+    public Set<String> getNames() {
+        return Collections.unmodifiableSet(rules.keySet());
+    }
+}
\ No newline at end of file
@@ -0,0 +1,307 @@
+/*
+ * Resolves the Style of elements, sharing Styles between equivalent elements
+ *
+ * Two elements with the same tag name, id, classes, values for the attributes the stylesheet
+ * tests, state for the pseudos the stylesheet uses, and the same parent Style, match exactly the
+ * same selectors.  The parent Style stands in for the whole ancestor chain, since it was itself
+ * shared only between equivalent parents.  So the second element of a long list of "li.item"
+ * reuses the Style of the first one instead of matching every candidate again.
+ *
+ * This does not hold when the stylesheet uses sibling combinators (A ~ B, A + B), because the
+ * result then depends on the element's siblings.  Sharing is turned off for those stylesheets.
+ *
+ * Not thread safe.  Use one resolver per thread.
+ */
+package com.baobei.css.match;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import com.baobei.css.model.*;
+
+public class StyleResolver {
+    public static final int CACHE_SIZE = 1024;
+
+    private final RuleIndex index;
+    private final SelectorMatcher matcher = new SelectorMatcher();
+    private final RuleIndex.Candidates candidates = new RuleIndex.Candidates();
+    private final LinkedHashMap<Signature, Style> cache;
+    private final String[] attributes; // Attribute names tested by the stylesheet
+    private final String[] pseudos; // Pseudos used by the stylesheet, with pseudoArgs at the same index
+    private final String[] pseudoArgs;
+    private final boolean sharing;
+    private long hits, misses;
+    private boolean timing; // Whether match() adds up the time spent in the matcher
+    private long matchNanos;
+
+    // Everything about an element that selectors can test, other than its siblings
+    private static final class Signature {
+        final String name, id;
+        final String[] classes;
+        final String[] attributes;
+        final long pseudos; // Bit set for each of the stylesheet's pseudos that is on
+        final Style parent;
+        final int hash;
+
+        Signature(String name, String id, String[] classes, String[] attributes, long pseudos, Style parent) {
+            this.name = name;
+            this.id = id;
+            this.classes = classes;
+            this.attributes = attributes;
+            this.pseudos = pseudos;
+            this.parent = parent;
+
+            int hash = (name != null ? name.hashCode() : 0);
+            hash = 31 * hash + (id != null ? id.hashCode() : 0);
+            hash = 31 * hash + Arrays.hashCode(classes);
+            hash = 31 * hash + Arrays.hashCode(attributes);
+            hash = 31 * hash + (int) (pseudos ^ (pseudos >>> 32));
+            this.hash = 31 * hash + System.identityHashCode(parent);
+        }
+
+        public int hashCode() {
+            return hash;
+        }
+
+        public boolean equals(Object object) {
+            if (!(object instanceof Signature))
+                return false;
+
+            Signature other = (Signature) object;
+
+            return hash == other.hash && parent == other.parent && pseudos == other.pseudos &&
+                equal(name, other.name) && equal(id, other.id) &&
+                Arrays.equals(classes, other.classes) && Arrays.equals(attributes, other.attributes);
+        }
+
+        private static boolean equal(String a, String b) {
+            return (a == null ? b == null : a.equals(b));
+        }
+    }
+
+    public StyleResolver(RuleIndex index) {
+        this(index, CACHE_SIZE);
+    }
+
+    public StyleResolver(RuleIndex index, final int cacheSize) {
+        this.index = index;
+        this.cache = new LinkedHashMap<Signature, Style>(64, 0.75f, true) {
+            protected boolean removeEldestEntry(Map.Entry<Signature, Style> eldest) {
+                return size() > cacheSize;
+            }
+        };
+
+        ArrayList<String> attributes = new ArrayList<String>();
+        ArrayList<String> pseudos = new ArrayList<String>();
+        ArrayList<String> pseudoArgs = new ArrayList<String>();
+        boolean siblings = false;
+
+        Stylesheet sheet = index.getStylesheet();
+        for (int x = 0; x < sheet.getSelectorCount(); x++) {
+            for (int y = 0; y < sheet.getPathCount(x); y++) {
+                for (int z = 0; z < sheet.getTagCount(x, y); z++) {
+                    Tag tag = sheet.getTag(x, y, z);
+
+                    if (tag.relation == Tag.RELATION_SIBLING || tag.relation == Tag.RELATION_SIBLING_ADJACENT)
+                        siblings = true;
+
+                    if (tag.attribKey != null && !attributes.contains(tag.attribKey))
+                        attributes.add(tag.attribKey);
+
+                    for (int p = 0; p < tag.getPseudoCount(); p++)
+                        addPseudo(pseudos, pseudoArgs, tag.getPseudo(p), tag.getPseudoArg(p));
+                }
+            }
+        }
+
+        this.attributes = attributes.toArray(new String[attributes.size()]);
+        this.pseudos = pseudos.toArray(new String[pseudos.size()]);
+        this.pseudoArgs = pseudoArgs.toArray(new String[pseudoArgs.size()]);
+
+        // Pseudo state is kept in a long, so stylesheets with more than 64 pseudos are not shared
+        this.sharing = !siblings && cacheSize > 0 && pseudos.size() <= 64;
+    }
+
+    private static void addPseudo(ArrayList<String> pseudos, ArrayList<String> pseudoArgs, String pseudo, String arg) {
+        for (int x = 0; x < pseudos.size(); x++) {
+            String other = pseudoArgs.get(x);
+
+            if (pseudos.get(x).equals(pseudo) && (arg == null ? other == null : arg.equals(other)))
+                return;
+        }
+
+        pseudos.add(pseudo);
+        pseudoArgs.add(arg);
+    }
+
+    // Resolve the Style of an element.  The filter holds the element's ancestors, or is null.
+    public Style resolve(Node node, Style parent, AncestorFilter filter) {
+        // Without a parent Style the ancestors are unknown, so only a real root can be shared
+        if (!sharing || (parent == null && node.getParent() != null))
+            return match(node, parent, filter);
+
+        Signature signature = getSignature(node, parent);
+        Style style = cache.get(signature);
+
+        if (style != null) {
+            hits++;
+            return style;
+        }
+
+        misses++;
+        style = match(node, parent, filter);
+        cache.put(signature, style);
+
+        return style;
+    }
+
+    // Resolve every element under root, depth first
+    public IdentityHashMap<Node, Style> resolveTree(Node root) {
+        IdentityHashMap<Node, Style> result = new IdentityHashMap<Node, Style>();
+        AncestorFilter filter = new AncestorFilter();
+        ResolveEvent event = new ResolveEvent();
+        MatchEvent match = new MatchEvent();
+        long hits = this.hits;
+        long elements = matcher.getElements(), candidates = matcher.getCandidates(), matched = matcher.getMatched();
+
+        // Only time the matcher while the match event is recorded
+        timing = match.isEnabled();
+        matchNanos = 0;
+
+        event.begin();
+        filter.setParents(root);
+        try {
+            resolveTree(root, null, filter, result);
+        } finally {
+            timing = false;
+        }
+        event.end();
+
+        if (event.shouldCommit()) {
+            event.elements = result.size();
+            event.selectors = index.getStylesheet().getSelectorCount();
+            event.hits = this.hits - hits;
+            event.matched = result.size() - event.hits;
+            event.commit();
+        }
+
+        // One event for the whole tree, from the matcher's counters.  Its time is only the time
+        // spent in the matcher, out of the resolve's.
+        if (match.shouldCommit()) {
+            match.matchTime = matchNanos;
+            match.elements = matcher.getElements() - elements;
+            match.selectors = index.getEntryCount();
+            match.candidates = matcher.getCandidates() - candidates;
+            match.matched = matcher.getMatched() - matched;
+            match.commit();
+        }
+
+        return result;
+    }
+
+    private void resolveTree(Node node, Style parent, AncestorFilter filter, IdentityHashMap<Node, Style> result) {
+        Style style = resolve(node, parent, filter);
+        result.put(node, style);
+
+        Node child = node.getFirstChild();
+        if (child != null) {
+            filter.push(node);
+
+            try {
+                for (; child != null; child = child.getNextSibling())
+                    resolveTree(child, style, filter, result);
+            } finally {
+                filter.pop();
+            }
+        }
+    }
+
+    private Signature getSignature(Node node, Style parent) {
+        String[] values = null;
+
+        if (attributes.length != 0) {
+            values = new String[attributes.length];
+
+            for (int x = 0; x < attributes.length; x++)
+                values[x] = node.getAttribute(attributes[x]);
+        }
+
+        long state = 0;
+        for (int x = 0; x < pseudos.length; x++) {
+            if (node.hasPseudo(pseudos[x], pseudoArgs[x]))
+                state |= (1L << x);
+        }
+
+        String[] classes = node.getClasses();
+
+        return new Signature(node.getName(), node.getId(), (classes != null ? classes.clone() : null), values, state, parent);
+    }
+
+    // Match the element against the stylesheet and run the cascade
+    private Style match(Node node, Style parent, AncestorFilter filter) {
+        if (timing) {
+            long start = System.nanoTime();
+
+            matcher.match(index, node, candidates, filter);
+            matchNanos += System.nanoTime() - start;
+        } else {
+            matcher.match(index, node, candidates, filter);
+        }
+
+        int count = candidates.size();
+        int[] entries = new int[count];
+
+        // Candidates are in source order, so a stable sort by weight gives the cascade order
+        for (int x = 0; x < count; x++) {
+            int entry = candidates.get(x), weight = index.getWeight(entry), y = x;
+
+            for (; y > 0 && index.getWeight(entries[y - 1]) > weight; y--)
+                entries[y] = entries[y - 1];
+
+            entries[y] = entry;
+        }
+
+        // Later Rules override earlier ones
+        Stylesheet sheet = index.getStylesheet();
+        HashMap<String, Rule> rules = new HashMap<String, Rule>();
+
+        for (int x = 0; x < count; x++) {
+            int selector = index.getSelector(entries[x]);
+
+            for (int y = 0; y < sheet.getRuleCount(selector); y++) {
+                Rule rule = sheet.getRule(selector, y);
+                rules.put(rule.name, rule);
+            }
+        }
+
+        return new Style(parent, entries, rules);
+    }
+
+    // False when the stylesheet uses sibling combinators, so every element is matched on its own
+    public boolean isSharing() {
+        return sharing;
+    }
+
+    public SelectorMatcher getMatcher() {
+        return matcher;
+    }
+
+    // Number of Styles found in the cache
+    public long getHits() {
+        return hits;
+    }
+
+    // Number of Styles that had to be matched while sharing was on
+    public long getMisses() {
+        return misses;
+    }
+
+    public void resetCounters() {
+        hits = 0;
+        misses = 0;
+        matcher.resetCounters();
+    }
+}
\ No newline at end of file
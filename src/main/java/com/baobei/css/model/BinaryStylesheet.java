@@ -0,0 +1,431 @@
+/*
+ * Binary form of a Stylesheet, so shipped stylesheets can be compiled once by a build step and
+ * loaded at startup without tokenizing or parsing them again
+ *
+ * Layout (ints and longs big-endian, counts and indexes as unsigned varints):
+ *
+ BinaryStylesheet
+    header                              -> MAGIC, VERSION, hash of the source it was made from
+    strings                             -> count, byte length of each, then all of them as UTF-8
+    error                               -> string + 1 (0 for none), line
+    selector                            -> count, then for each:
+        line
+        path                            -> count, then weight and tag count for each
+            tag                         -> name + 1, relation, attribKey + 1, attribValue + 1,
+                                           attribMatch, pseudos
+        rule                            -> count, then name, weight, pseudos, values for each
+            value                       -> type, kind, name count, names, args (values again)
+ *
+ * Pseudos, values and args are written as count + 1, with 0 for none.  Function values
+ * are bound to a FunctionRegistry, and constant calls folded, when the Stylesheet is read, so a
+ * binary made with one set of functions can be loaded with another.
+ */
+package com.baobei.css.model;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+
+public final class BinaryStylesheet {
+    public static final int MAGIC = 0x43535342; // "CSSB"
+    public static final int VERSION = 1;
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private BinaryStylesheet() {
+    }
+
+    // Write sheet, made from a source with the given hash (see ContentHash)
+    public static void write(Stylesheet sheet, long sourceHash, OutputStream out) throws IOException {
+        Writer writer = new Writer();
+        writer.writeSheet(sheet);
+
+        ByteArrayOutputStream header = new ByteArrayOutputStream();
+        writeInt(header, MAGIC);
+        writeInt(header, VERSION);
+        writeInt(header, (int) (sourceHash >>> 32));
+        writeInt(header, (int) sourceHash);
+
+        // Strings go before the selectors that refer to them
+        ByteArrayOutputStream strings = new ByteArrayOutputStream();
+        byte[][] encoded = new byte[writer.strings.size()][];
+
+        writeVarint(header, encoded.length);
+        for (int x = 0; x < encoded.length; x++) {
+            encoded[x] = writer.strings.get(x).getBytes(UTF8);
+            writeVarint(header, encoded[x].length);
+            strings.write(encoded[x]);
+        }
+
+        header.writeTo(out);
+        strings.writeTo(out);
+        writer.body.writeTo(out);
+    }
+
+    public static byte[] toBytes(Stylesheet sheet, long sourceHash) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        try {
+            write(sheet, sourceHash, out);
+        } catch (IOException e) {
+            // Cannot happen, the bytes are in memory
+            throw new IllegalStateException(e);
+        }
+
+        return out.toByteArray();
+    }
+
+    // Hash of the source the binary was made from.  The buffer's position is not changed.
+    public static long getSourceHash(ByteBuffer buffer) throws IOException {
+        ByteBuffer data = buffer.duplicate();
+
+        readHeader(data);
+
+        return data.getLong();
+    }
+
+    public static Stylesheet read(ByteBuffer buffer) throws IOException {
+        return read(buffer, FunctionRegistry.getDefault());
+    }
+
+    // Read a Stylesheet from the buffer's position on
+    public static Stylesheet read(ByteBuffer buffer, FunctionRegistry functions) throws IOException {
+        ByteBuffer data = buffer.duplicate();
+
+        try {
+            readHeader(data);
+            data.getLong();
+
+            return new Reader(data, functions).readSheet();
+        } catch (BufferUnderflowException e) {
+            throw new IOException("Binary stylesheet is truncated");
+        } catch (RuntimeException e) {
+            // Bad counts or string indexes, or values that do not fold
+            throw new IOException("Binary stylesheet is corrupt", e);
+        }
+    }
+
+    public static Stylesheet load(Path path) throws IOException {
+        return load(path, FunctionRegistry.getDefault());
+    }
+
+    // The file is memory-mapped, so only the Strings and objects of the model are created on the heap
+    public static Stylesheet load(Path path, FunctionRegistry functions) throws IOException {
+        return read(map(path), functions);
+    }
+
+    // The mapping stays valid after the channel is closed
+    public static ByteBuffer map(Path path) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+
+        try {
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        } finally {
+            channel.close();
+        }
+    }
+
+    private static void readHeader(ByteBuffer data) throws IOException {
+        if (data.remaining() < 16 || data.getInt() != MAGIC)
+            throw new IOException("Not a binary stylesheet");
+
+        int version = data.getInt();
+        if (version != VERSION)
+            throw new IOException("Unsupported binary stylesheet version " + version + ", expected " + VERSION);
+    }
+
+    private static void writeInt(ByteArrayOutputStream out, int value) {
+        out.write(value >>> 24);
+        out.write(value >>> 16);
+        out.write(value >>> 8);
+        out.write(value);
+    }
+
+    // Unsigned LEB128, 7 bits to a byte
+    private static void writeVarint(ByteArrayOutputStream out, int value) {
+        while ((value & ~0x7f) != 0) {
+            out.write((value & 0x7f) | 0x80);
+            value >>>= 7;
+        }
+
+        out.write(value);
+    }
+
+    private static final class Writer {
+        final ByteArrayOutputStream body = new ByteArrayOutputStream();
+        final ArrayList<String> strings = new ArrayList<String>();
+        final HashMap<String, Integer> ids = new HashMap<String, Integer>();
+
+        void writeSheet(Stylesheet sheet) {
+            writeString(sheet.getError());
+            writeVarint(body, sheet.getErrorLine());
+            writeVarint(body, sheet.getSelectorCount());
+
+            for (int x = 0; x < sheet.getSelectorCount(); x++) {
+                writeVarint(body, sheet.getLine(x));
+                writeVarint(body, sheet.getPathCount(x));
+
+                for (int y = 0; y < sheet.getPathCount(x); y++) {
+                    writeVarint(body, sheet.getWeight(x, y));
+                    writeVarint(body, sheet.getTagCount(x, y));
+
+                    for (int z = 0; z < sheet.getTagCount(x, y); z++)
+                        writeTag(sheet.getTag(x, y, z));
+                }
+
+                writeVarint(body, sheet.getRuleCount(x));
+                for (int y = 0; y < sheet.getRuleCount(x); y++)
+                    writeRule(sheet.getRule(x, y));
+            }
+        }
+
+        void writeTag(Tag tag) {
+            writeString(tag.name);
+            writeVarint(body, tag.relation);
+            writeString(tag.attribKey);
+            writeString(tag.attribValue);
+            writeVarint(body, tag.attribMatch);
+
+            int count = tag.getPseudoCount();
+            writeVarint(body, count == 0 ? 0 : count + 1);
+            for (int x = 0; x < count; x++) {
+                writeString(tag.getPseudo(x));
+                writeString(tag.getPseudoArg(x));
+            }
+        }
+
+        void writeRule(Rule rule) {
+            writeString(rule.name);
+            writeVarint(body, rule.weight);
+
+            int count = rule.getPseudoCount();
+            writeVarint(body, count == 0 ? 0 : count + 1);
+            for (int x = 0; x < count; x++) {
+                writeString(rule.getPseudo(x));
+                writeString(rule.getPseudoArg(x));
+            }
+
+            count = rule.getValueCount();
+            writeVarint(body, count + 1);
+            for (int x = 0; x < count; x++)
+                writeValue(rule.getValue(x));
+        }
+
+        void writeValue(RuleValue value) {
+            writeVarint(body, value.type);
+            writeVarint(body, value.getKind());
+            writeVarint(body, value.getNameCount());
+
+            for (int y = 0; y < value.getNameCount(); y++)
+                writeString(value.getName(y));
+
+            int count = value.getArgCount();
+            writeVarint(body, count == 0 ? 0 : count + 1);
+            for (int x = 0; x < count; x++)
+                writeValue(value.getArg(x));
+        }
+
+        // String index + 1, or 0 for null
+        void writeString(String value) {
+            if (value == null) {
+                writeVarint(body, 0);
+                return;
+            }
+
+            Integer id = ids.get(value);
+            if (id == null) {
+                id = strings.size();
+                ids.put(value, id);
+                strings.add(value);
+            }
+
+            writeVarint(body, id + 1);
+        }
+    }
+
+    private static final class Reader {
+        final ByteBuffer data;
+        final FunctionRegistry functions;
+        final String[] strings;
+
+        Reader(ByteBuffer data, FunctionRegistry functions) {
+            this.data = data;
+            this.functions = functions;
+
+            int count = readCount();
+            int[] lengths = new int[count];
+            int total = 0;
+
+            for (int x = 0; x < count; x++) {
+                lengths[x] = readCount();
+                total += lengths[x];
+
+                if (total > data.remaining())
+                    throw new BufferUnderflowException();
+            }
+
+            // One copy off the mapping for all the strings
+            byte[] bytes = new byte[total];
+            data.get(bytes);
+
+            strings = new String[count];
+            for (int x = 0, offset = 0; x < count; offset += lengths[x], x++)
+                strings[x] = new String(bytes, offset, lengths[x], UTF8);
+        }
+
+        Stylesheet readSheet() {
+            String error = readString();
+            int errorLine = readVarint();
+            int count = readCount();
+
+            Tag[][][] paths = new Tag[count][][];
+            int[][] weights = new int[count][];
+            Rule[][] rules = new Rule[count][];
+            int[] lines = new int[count];
+
+            for (int x = 0; x < count; x++) {
+                lines[x] = readVarint();
+                paths[x] = new Tag[readCount()][];
+                weights[x] = new int[paths[x].length];
+
+                for (int y = 0; y < paths[x].length; y++) {
+                    weights[x][y] = readVarint();
+                    paths[x][y] = new Tag[readCount()];
+
+                    for (int z = 0; z < paths[x][y].length; z++)
+                        paths[x][y][z] = readTag();
+                }
+
+                rules[x] = new Rule[readCount()];
+                for (int y = 0; y < rules[x].length; y++) {
+                    rules[x][y] = readRule();
+                    functions.fold(rules[x][y]);
+                }
+            }
+
+            return new Stylesheet(paths, weights, rules, lines, error, errorLine);
+        }
+
+        Tag readTag() {
+            Tag tag = new Tag();
+
+            tag.name = readString();
+            tag.relation = readVarint();
+            tag.attribKey = readString();
+            tag.attribValue = readString();
+            tag.attribMatch = readVarint();
+
+            String[][] pseudos = readPseudos();
+            tag.setReadOnly(pseudos[0], pseudos[1]);
+
+            return tag;
+        }
+
+        Rule readRule() {
+            Rule rule = new Rule();
+
+            rule.name = readString();
+            rule.weight = readVarint();
+
+            String[][] pseudos = readPseudos();
+            RuleValue[] values = readValues();
+
+            rule.setReadOnly(pseudos[0], pseudos[1], (values != null ? values : new RuleValue[0]));
+
+            return rule;
+        }
+
+        RuleValue[] readValues() {
+            int count = readOptionalCount();
+
+            if (count <= 0)
+                return null;
+
+            RuleValue[] values = new RuleValue[count];
+            for (int x = 0; x < count; x++) {
+                RuleValue value = new RuleValue();
+
+                value.type = readVarint();
+
+                int kind = readVarint();
+                String[] names = new String[readCount()];
+                for (int y = 0; y < names.length; y++)
+                    names[y] = readString();
+
+                value.setReadOnly(names, readValues());
+
+                // Decodes the value again, the same way the parser did
+                value.decodeName(kind == RuleValue.KIND_COLOR);
+
+                values[x] = value;
+            }
+
+            return values;
+        }
+
+        // Pseudos and their arguments, or nulls if there are none
+        String[][] readPseudos() {
+            int count = readOptionalCount();
+
+            if (count <= 0)
+                return new String[2][];
+
+            String[] pseudos = new String[count], args = new String[count];
+            for (int x = 0; x < count; x++) {
+                pseudos[x] = readString();
+                args[x] = readString();
+            }
+
+            return new String[][] { pseudos, args };
+        }
+
+        String readString() {
+            int id = readVarint();
+
+            return (id == 0 ? null : strings[id - 1]);
+        }
+
+        int readVarint() {
+            int value = 0;
+
+            for (int shift = 0; shift < 32; shift += 7) {
+                byte b = data.get();
+
+                value |= (b & 0x7f) << shift;
+                if (b >= 0)
+                    return value;
+            }
+
+            throw new IllegalStateException("Varint longer than 5 bytes");
+        }
+
+        // Number of items that follow.  Each takes at least a byte, so a larger count than the bytes
+        // left is damage, and is not allocated.
+        int readCount() {
+            int count = readVarint();
+
+            if (count < 0 || count > data.remaining())
+                throw new IllegalStateException("Count " + count + " with " + data.remaining() + " bytes left");
+
+            return count;
+        }
+
+        // Count written as count + 1, -1 for null
+        int readOptionalCount() {
+            int count = readVarint() - 1;
+
+            if (count < -1 || count > data.remaining())
+                throw new IllegalStateException("Count " + count + " with " + data.remaining() + " bytes left");
+
+            return count;
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,595 @@
+/*
+ * Compact, read-only copy of a Stylesheet held in parallel int arrays
+ *
+ * A Stylesheet keeps a Tag, Rule and RuleValue object (and their Vectors) for every part of every
+ * selector.  This keeps the same data as a handful of int arrays, with every name stored once in a
+ * shared symbol pool.  Tags, rules and values are referred to by index:
+ *
+ CompactStylesheet
+    selector                            -> index (0 to many)
+        path                            -> getTag(selector, path, tag) gives a tag index
+        rule                            -> getRule(selector, rule) gives a rule index
+            value                       -> getValue(rule, value) gives a value index
+                arg                     -> getArg(value, arg) gives a value index
+ *
+ * The getters for tags, rules and values take those indexes, so reading the stylesheet creates
+ * no objects.  toRule() and toValue() build the object model for a single entry if needed.
+ *
+ * Numbers and colors are kept decoded, and function values keep the function they were bound to
+ * and their folded result, so values read the same as they do from the Stylesheet.
+ */
+package com.baobei.css.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Vector;
+
+public final class CompactStylesheet {
+    private final String[] symbols; // Every distinct name, referred to by its index
+
+    private final int[] selectorPaths; // [selector] first path, selectorPaths[selector + 1] ends it
+    private final int[] selectorRules; // [selector] first rule, selectorRules[selector + 1] ends it
+    private final int[] lines; // [selector]
+
+    private final int[] pathTags; // [path] first tag, pathTags[path + 1] ends it
+    private final int[] weights; // [path]
+
+    private final int[] tagNames; // [tag] symbol, or -1
+    private final int[] tagRelations; // [tag]
+    private final int[] tagAttribKeys; // [tag] symbol, or -1
+    private final int[] tagAttribValues; // [tag] symbol, or -1
+    private final int[] tagAttribMatches; // [tag]
+    private final int[] tagPseudos; // [tag] first pseudo, tagPseudos[tag + 1] ends it
+
+    private final int[] ruleNames; // [rule] symbol
+    private final int[] ruleWeights; // [rule]
+    private final int[] ruleValues; // [rule] first entry in valueRefs, ruleValues[rule + 1] ends it
+    private final int[] rulePseudos; // [rule] first pseudo, rulePseudos[rule + 1] ends it
+
+    private final int[] valueTypes; // [value]
+    private final int[] valueKinds; // [value] RuleValue.getKind()
+    private final int[] valueNames; // [value] first entry in nameRefs, valueNames[value + 1] ends it
+    private final int[] valueArgs; // [value] first entry in argRefs
+    private final int[] valueArgCounts; // [value]
+    private final double[] valueNumbers; // [value] number of a KIND_NUMBER value
+    private final int[] valueUnits; // [value] unit of a KIND_NUMBER value
+    private final int[] valueColors; // [value] ARGB of a KIND_COLOR value
+    private final CssFunction[] valueFunctions; // [value] function bound to a TYPE_FUNCTION value, or null
+    private final RuleValue[] valueFolded; // [value] result of a folded function call, or null
+
+    private final int[] valueRefs; // Value index for each value of each rule
+    private final int[] argRefs; // Value index for each argument of each function
+    private final int[] nameRefs; // Symbol for each name of each value
+    private final int[] tagPseudoNames; // Symbol for each pseudo of each tag
+    private final int[] tagPseudoArgs; // Symbol for each pseudo argument, or -1
+    private final int[] rulePseudoNames; // Symbol for each pseudo of each rule
+    private final int[] rulePseudoArgs; // Symbol for each pseudo argument, or -1
+
+    private final String error;
+    private final int errorLine;
+
+    // Growable int array used while building
+    private static final class Ints {
+        int[] data = new int[64];
+        int size;
+
+        int add(int value) {
+            if (size == data.length)
+                data = Arrays.copyOf(data, size * 2);
+
+            data[size] = value;
+            return size++;
+        }
+
+        // Reserve count entries, returning the first one
+        int reserve(int count) {
+            if (size + count > data.length)
+                data = Arrays.copyOf(data, Math.max(data.length * 2, size + count));
+
+            size += count;
+            return size - count;
+        }
+
+        int[] toArray() {
+            return Arrays.copyOf(data, size);
+        }
+    }
+
+    // Growable double array used while building
+    private static final class Doubles {
+        double[] data = new double[64];
+        int size;
+
+        int add(double value) {
+            if (size == data.length)
+                data = Arrays.copyOf(data, size * 2);
+
+            data[size] = value;
+            return size++;
+        }
+
+        double[] toArray() {
+            return Arrays.copyOf(data, size);
+        }
+    }
+
+    // Copies everything from sheet.  The sheet is not needed afterwards.
+    public CompactStylesheet(Stylesheet sheet) {
+        HashMap<String, Integer> symbolIds = new HashMap<String, Integer>();
+        ArrayList<String> symbolList = new ArrayList<String>();
+
+        Ints selectorPaths = new Ints(), selectorRules = new Ints(), lines = new Ints();
+        Ints pathTags = new Ints(), weights = new Ints();
+        Ints tagNames = new Ints(), tagRelations = new Ints(), tagAttribKeys = new Ints(), tagAttribValues = new Ints();
+        Ints tagAttribMatches = new Ints(), tagPseudos = new Ints();
+        Ints ruleNames = new Ints(), ruleWeights = new Ints(), ruleValues = new Ints(), rulePseudos = new Ints();
+        Ints valueRefs = new Ints(), tagPseudoNames = new Ints(), tagPseudoArgs = new Ints();
+        Ints rulePseudoNames = new Ints(), rulePseudoArgs = new Ints();
+        Values values = new Values();
+
+        for (int x = 0; x < sheet.getSelectorCount(); x++) {
+            selectorPaths.add(pathTags.size);
+            selectorRules.add(ruleNames.size);
+            lines.add(sheet.getLine(x));
+
+            for (int y = 0; y < sheet.getPathCount(x); y++) {
+                pathTags.add(tagNames.size);
+                weights.add(sheet.getWeight(x, y));
+
+                for (int z = 0; z < sheet.getTagCount(x, y); z++) {
+                    Tag tag = sheet.getTag(x, y, z);
+
+                    tagNames.add(symbol(symbolIds, symbolList, tag.name));
+                    tagRelations.add(tag.relation);
+                    tagAttribKeys.add(symbol(symbolIds, symbolList, tag.attribKey));
+                    tagAttribValues.add(symbol(symbolIds, symbolList, tag.attribValue));
+                    tagAttribMatches.add(tag.attribMatch);
+                    tagPseudos.add(tagPseudoNames.size);
+
+                    for (int p = 0; p < tag.getPseudoCount(); p++) {
+                        tagPseudoNames.add(symbol(symbolIds, symbolList, tag.getPseudo(p)));
+                        tagPseudoArgs.add(symbol(symbolIds, symbolList, tag.getPseudoArg(p)));
+                    }
+                }
+            }
+
+            for (int y = 0; y < sheet.getRuleCount(x); y++) {
+                Rule rule = sheet.getRule(x, y);
+
+                ruleNames.add(symbol(symbolIds, symbolList, rule.name));
+                ruleWeights.add(rule.weight);
+                rulePseudos.add(rulePseudoNames.size);
+
+                for (int p = 0; p < rule.getPseudoCount(); p++) {
+                    rulePseudoNames.add(symbol(symbolIds, symbolList, rule.getPseudo(p)));
+                    rulePseudoArgs.add(symbol(symbolIds, symbolList, rule.getPseudoArg(p)));
+                }
+
+                ruleValues.add(valueRefs.size);
+
+                int start = valueRefs.reserve(rule.getValueCount());
+                for (int v = 0; v < rule.getValueCount(); v++) {
+                    int value = values.add(symbolIds, symbolList, rule.getValue(v));
+                    valueRefs.data[start + v] = value;
+                }
+            }
+        }
+
+        // End markers, so the count for the last entry is (next start - start)
+        selectorPaths.add(pathTags.size);
+        selectorRules.add(ruleNames.size);
+        pathTags.add(tagNames.size);
+        tagPseudos.add(tagPseudoNames.size);
+        rulePseudos.add(rulePseudoNames.size);
+        ruleValues.add(valueRefs.size);
+        values.names.add(values.nameRefs.size);
+
+        this.symbols = symbolList.toArray(new String[symbolList.size()]);
+        this.selectorPaths = selectorPaths.toArray();
+        this.selectorRules = selectorRules.toArray();
+        this.lines = lines.toArray();
+        this.pathTags = pathTags.toArray();
+        this.weights = weights.toArray();
+        this.tagNames = tagNames.toArray();
+        this.tagRelations = tagRelations.toArray();
+        this.tagAttribKeys = tagAttribKeys.toArray();
+        this.tagAttribValues = tagAttribValues.toArray();
+        this.tagAttribMatches = tagAttribMatches.toArray();
+        this.tagPseudos = tagPseudos.toArray();
+        this.ruleNames = ruleNames.toArray();
+        this.ruleWeights = ruleWeights.toArray();
+        this.ruleValues = ruleValues.toArray();
+        this.rulePseudos = rulePseudos.toArray();
+        this.valueTypes = values.types.toArray();
+        this.valueKinds = values.kinds.toArray();
+        this.valueNames = values.names.toArray();
+        this.valueArgs = values.args.toArray();
+        this.valueArgCounts = values.argCounts.toArray();
+        this.valueNumbers = values.numbers.toArray();
+        this.valueUnits = values.units.toArray();
+        this.valueColors = values.colors.toArray();
+        this.valueFunctions = values.functions.toArray(new CssFunction[values.functions.size()]);
+        this.valueFolded = values.folded.toArray(new RuleValue[values.folded.size()]);
+        this.valueRefs = valueRefs.toArray();
+        this.argRefs = values.argRefs.toArray();
+        this.nameRefs = values.nameRefs.toArray();
+        this.tagPseudoNames = tagPseudoNames.toArray();
+        this.tagPseudoArgs = tagPseudoArgs.toArray();
+        this.rulePseudoNames = rulePseudoNames.toArray();
+        this.rulePseudoArgs = rulePseudoArgs.toArray();
+        this.error = sheet.getError();
+        this.errorLine = sheet.getErrorLine();
+    }
+
+    // Value arrays while building.  Function arguments are added after the function itself.
+    private static final class Values {
+        Ints types = new Ints(), kinds = new Ints(), names = new Ints(), args = new Ints(), argCounts = new Ints();
+        Ints argRefs = new Ints(), nameRefs = new Ints();
+        Doubles numbers = new Doubles();
+        Ints units = new Ints(), colors = new Ints();
+        ArrayList<CssFunction> functions = new ArrayList<CssFunction>();
+        ArrayList<RuleValue> folded = new ArrayList<RuleValue>();
+
+        int add(HashMap<String, Integer> symbolIds, ArrayList<String> symbolList, RuleValue value) {
+            int index = types.add(value.type);
+            int kind = value.getKind();
+            kinds.add(kind);
+
+            // Decoded once here, so the getters only read the arrays
+            String name = (value.getNameCount() == 1 ? value.getName(0) : null);
+            boolean number = (kind == RuleValue.KIND_NUMBER && value.type == RuleValue.TYPE_IDENTIFIER);
+
+            numbers.add(number ? RuleValue.decodeNumber(name) : 0);
+            units.add(number ? RuleValue.decodeUnit(name) : RuleValue.UNIT_NONE);
+            colors.add(kind == RuleValue.KIND_COLOR ? (int) RuleValue.decodeColor(name) : 0);
+            functions.add(value.getFunction());
+            folded.add(value.getFolded());
+
+            names.add(nameRefs.size);
+            for (int x = 0; x < value.getNameCount(); x++)
+                nameRefs.add(symbol(symbolIds, symbolList, value.getName(x)));
+
+            int count = value.getArgCount();
+            int start = argRefs.reserve(count);
+
+            args.add(start);
+            argCounts.add(count);
+
+            // Nested arguments can grow argRefs, so read data only after add() returns
+            for (int x = 0; x < count; x++) {
+                int arg = add(symbolIds, symbolList, value.getArg(x));
+                argRefs.data[start + x] = arg;
+            }
+
+            return index;
+        }
+    }
+
+    private static int symbol(HashMap<String, Integer> symbolIds, ArrayList<String> symbolList, String name) {
+        if (name == null)
+            return -1;
+
+        Integer id = symbolIds.get(name);
+
+        if (id == null) {
+            id = symbolList.size();
+            symbolIds.put(name, id);
+            symbolList.add(name);
+        }
+
+        return id;
+    }
+
+    private String symbol(int id) {
+        return (id == -1 ? null : symbols[id]);
+    }
+
+    // Number of distinct names in the symbol pool
+    public int getSymbolCount() {
+        return symbols.length;
+    }
+
+    // Number of selectors in the stylesheet
+    public int getSelectorCount() {
+        return lines.length;
+    }
+
+    // Number of paths for selector
+    public int getPathCount(int selector) {
+        return selectorPaths[selector + 1] - selectorPaths[selector];
+    }
+
+    // Number of Tags for path
+    public int getTagCount(int selector, int path) {
+        int index = selectorPaths[selector] + path;
+        return pathTags[index + 1] - pathTags[index];
+    }
+
+    // Tag index for a Tag of a path
+    public int getTag(int selector, int path, int tag) {
+        return pathTags[selectorPaths[selector] + path] + tag;
+    }
+
+    // Get weight (specificity) for the path
+    public int getWeight(int selector, int path) {
+        return weights[selectorPaths[selector] + path];
+    }
+
+    // Number of rules for selector
+    public int getRuleCount(int selector) {
+        return selectorRules[selector + 1] - selectorRules[selector];
+    }
+
+    // Rule index for a rule of a selector
+    public int getRule(int selector, int rule) {
+        return selectorRules[selector] + rule;
+    }
+
+    // Line where the selector starts
+    public int getLine(int selector) {
+        return lines[selector];
+    }
+
+    // Description of the error that stopped the parse, or null if the whole input was parsed
+    public String getError() {
+        return error;
+    }
+
+    public int getErrorLine() {
+        return errorLine;
+    }
+
+    // Tags, by tag index
+
+    public String getTagName(int tag) {
+        return symbol(tagNames[tag]);
+    }
+
+    public int getTagRelation(int tag) {
+        return tagRelations[tag];
+    }
+
+    public String getAttribKey(int tag) {
+        return symbol(tagAttribKeys[tag]);
+    }
+
+    public String getAttribValue(int tag) {
+        return symbol(tagAttribValues[tag]);
+    }
+
+    public int getAttribMatch(int tag) {
+        return tagAttribMatches[tag];
+    }
+
+    public int getTagPseudoCount(int tag) {
+        return tagPseudos[tag + 1] - tagPseudos[tag];
+    }
+
+    public String getTagPseudo(int tag, int pseudo) {
+        return symbols[tagPseudoNames[tagPseudos[tag] + pseudo]];
+    }
+
+    public String getTagPseudoArg(int tag, int pseudo) {
+        return symbol(tagPseudoArgs[tagPseudos[tag] + pseudo]);
+    }
+
+    // Rules, by rule index
+
+    public String getRuleName(int rule) {
+        return symbols[ruleNames[rule]];
+    }
+
+    public int getRuleWeight(int rule) {
+        return ruleWeights[rule];
+    }
+
+    public int getRulePseudoCount(int rule) {
+        return rulePseudos[rule + 1] - rulePseudos[rule];
+    }
+
+    public String getRulePseudo(int rule, int pseudo) {
+        return symbols[rulePseudoNames[rulePseudos[rule] + pseudo]];
+    }
+
+    public String getRulePseudoArg(int rule, int pseudo) {
+        return symbol(rulePseudoArgs[rulePseudos[rule] + pseudo]);
+    }
+
+    public int getValueCount(int rule) {
+        return ruleValues[rule + 1] - ruleValues[rule];
+    }
+
+    // Value index for a value of a rule
+    public int getValue(int rule, int value) {
+        return valueRefs[ruleValues[rule] + value];
+    }
+
+    // Values, by value index
+
+    public int getType(int value) {
+        return valueTypes[value];
+    }
+
+    // One of RuleValue.KIND_*
+    public int getKind(int value) {
+        return valueKinds[value];
+    }
+
+    // Same as RuleValue.getName()
+    public String getName(int value) {
+        int start = valueNames[value], end = valueNames[value + 1];
+
+        if (end - start == 1)
+            return symbols[nameRefs[start]];
+
+        StringBuilder result = new StringBuilder();
+        for (int x = start; x < end; x++) {
+            if (x != start)
+                result.append(' ');
+            result.append(symbols[nameRefs[x]]);
+        }
+
+        return result.toString();
+    }
+
+    public int getArgCount(int value) {
+        return valueArgCounts[value];
+    }
+
+    // Value index for an argument of a function value
+    public int getArg(int value, int arg) {
+        return argRefs[valueArgs[value] + arg];
+    }
+
+    // Same as RuleValue.getNumber()
+    public double getNumber(int value) throws Exception {
+        if (valueKinds[value] != RuleValue.KIND_NUMBER || valueTypes[value] != RuleValue.TYPE_IDENTIFIER)
+            throw new Exception("Not a number: " + getName(value));
+
+        return valueNumbers[value];
+    }
+
+    // Same as RuleValue.getUnit()
+    public int getUnit(int value) {
+        return valueUnits[value];
+    }
+
+    // Same as RuleValue.getARGB()
+    public int getARGB(int value) throws Exception {
+        if (valueKinds[value] != RuleValue.KIND_COLOR)
+            return 0xff000000 | getColor(value);
+
+        return valueColors[value];
+    }
+
+    // Result of a function value, from the function it was bound to when the stylesheet was compiled
+    private RuleValue evaluate(int value) throws Exception {
+        if (valueFolded[value] != null)
+            return valueFolded[value];
+
+        CssFunction call = valueFunctions[value];
+
+        if (call == null)
+            call = FunctionRegistry.getDefault().get(getName(value));
+
+        if (call == null)
+            throw new Exception("Undefined function: " + getName(value));
+
+        // Only calls that could not be folded get here, so their arguments are built on each call
+        List<RuleValue> args = null;
+        int count = valueArgCounts[value];
+
+        if (count != 0) {
+            args = new ArrayList<RuleValue>(count);
+            for (int x = 0; x < count; x++)
+                args.add(toValue(getArg(value, x)));
+        }
+
+        return call.call(args);
+    }
+
+    // Same as RuleValue.get()
+    public String get(int value) throws Exception {
+        if (valueTypes[value] == RuleValue.TYPE_FUNCTION)
+            return evaluate(value).get();
+        else
+            return getName(value);
+    }
+
+    // Same as RuleValue.getInt()
+    public int getInt(int value) throws Exception {
+        if (valueKinds[value] == RuleValue.KIND_NUMBER && valueTypes[value] == RuleValue.TYPE_IDENTIFIER)
+            return (int) valueNumbers[value];
+
+        if (valueTypes[value] == RuleValue.TYPE_FUNCTION)
+            return evaluate(value).getInt();
+
+        String name = getName(value);
+
+        // Check for "pt" units
+        int found = name.indexOf('p');
+        if (found != -1)
+            name = name.substring(0, found);
+
+        // Check for "%" at end
+        found = name.indexOf('%');
+        if (found != -1)
+            name = name.substring(0, found);
+
+        return Integer.parseInt(name);
+    }
+
+    // Same as RuleValue.getColor()
+    public int getColor(int value) throws Exception {
+        if (valueKinds[value] == RuleValue.KIND_COLOR && valueTypes[value] == RuleValue.TYPE_IDENTIFIER)
+            return valueColors[value] & 0xffffff;
+
+        if (valueTypes[value] == RuleValue.TYPE_FUNCTION)
+            return evaluate(value).getColor();
+        else
+            return Integer.parseInt(getName(value), 16);
+    }
+
+    // Object model copies, for code that needs a Rule or RuleValue
+
+    public Rule toRule(int rule) {
+        Rule result = new Rule();
+
+        result.name = getRuleName(rule);
+        result.weight = ruleWeights[rule];
+
+        int count = getRulePseudoCount(rule);
+        if (count != 0) {
+            result.pseudos = new Vector<String>(count);
+            result.pseudoArgs = new Vector<String>(count);
+
+            for (int x = 0; x < count; x++) {
+                result.pseudos.addElement(getRulePseudo(rule, x));
+                result.pseudoArgs.addElement(getRulePseudoArg(rule, x));
+            }
+        }
+
+        count = getValueCount(rule);
+        if (count != 0) {
+            result.values = new Vector<RuleValue>(count);
+
+            for (int x = 0; x < count; x++)
+                result.values.addElement(toValue(getValue(rule, x)));
+
+            result.lastValue = result.values.lastElement();
+        }
+
+        return result;
+    }
+
+    public RuleValue toValue(int value) {
+        RuleValue result = new RuleValue();
+
+        result.type = valueTypes[value];
+
+        // Decodes the value again, the same way the parser did
+        for (int x = valueNames[value]; x < valueNames[value + 1]; x++) {
+            if (valueKinds[value] == RuleValue.KIND_COLOR)
+                result.setColorName(symbols[nameRefs[x]]);
+            else
+                result.setName(symbols[nameRefs[x]]);
+        }
+
+        int count = valueArgCounts[value];
+        if (count != 0) {
+            result.args = new Vector<RuleValue>(count);
+
+            for (int x = 0; x < count; x++)
+                result.args.addElement(toValue(getArg(value, x)));
+
+            result.lastArg = result.args.lastElement();
+        }
+
+        result.setFunction(valueFunctions[value]);
+        result.setFolded(valueFolded[value]);
+
+        return result;
+    }
+}
\ No newline at end of file
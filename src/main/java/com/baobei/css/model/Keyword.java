@@ -0,0 +1,72 @@
+/*
+ * Ids for the common CSS keywords, so values like "bold" or "none" can be compared as ints
+ */
+package com.baobei.css.model;
+
+import java.util.HashMap;
+
+public final class Keyword {
+    public static final int UNKNOWN = -1;
+
+    public static final int NONE = 0;
+    public static final int AUTO = 1;
+    public static final int INHERIT = 2;
+    public static final int INITIAL = 3;
+    public static final int NORMAL = 4;
+    public static final int BOLD = 5;
+    public static final int ITALIC = 6;
+    public static final int UNDERLINE = 7;
+    public static final int LEFT = 8;
+    public static final int RIGHT = 9;
+    public static final int CENTER = 10;
+    public static final int TOP = 11;
+    public static final int MIDDLE = 12;
+    public static final int BOTTOM = 13;
+    public static final int BLOCK = 14;
+    public static final int INLINE = 15;
+    public static final int HIDDEN = 16;
+    public static final int VISIBLE = 17;
+    public static final int SOLID = 18;
+    public static final int DASHED = 19;
+    public static final int DOTTED = 20;
+    public static final int TRANSPARENT = 21;
+    public static final int REPEAT = 22;
+    public static final int NO_REPEAT = 23;
+    public static final int SCROLL = 24;
+    public static final int FIXED = 25;
+    public static final int ABSOLUTE = 26;
+    public static final int RELATIVE = 27;
+    public static final int TRUE = 28;
+    public static final int FALSE = 29;
+
+    private static final String[] NAMES = {
+        "none", "auto", "inherit", "initial", "normal", "bold", "italic", "underline",
+        "left", "right", "center", "top", "middle", "bottom", "block", "inline",
+        "hidden", "visible", "solid", "dashed", "dotted", "transparent", "repeat", "no-repeat",
+        "scroll", "fixed", "absolute", "relative", "true", "false"
+    };
+
+    private static final HashMap<String, Integer> ids = new HashMap<String, Integer>(NAMES.length * 2);
+
+    static {
+        for (int x = 0; x < NAMES.length; x++)
+            ids.put(NAMES[x], x);
+    }
+
+    private Keyword() {
+    }
+
+    // Id for a keyword, or UNKNOWN.  Keywords are case-insensitive, as in CSS.
+    public static int getId(String name) {
+        Integer id = ids.get(name);
+
+        if (id == null)
+            id = ids.get(name.toLowerCase());
+
+        return (id == null ? UNKNOWN : id);
+    }
+
+    public static String getName(int id) {
+        return NAMES[id];
+    }
+}
\ No newline at end of file
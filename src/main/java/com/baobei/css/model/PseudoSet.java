@@ -0,0 +1,273 @@
+/*
+ * Set of pseudo-classes held as bits, for the pseudos a Rule requires or the pseudos active on an
+ * element
+ *
+ * Every pseudo name gets a small integer id the first time it is seen.  A pseudo with an argument,
+ * ie. lang(en), gets a different id from the same pseudo without one, and its argument is kept
+ * beside the bits.  Ids below 64 live in a long, the rest in an overflow array.
+ *
+ * Ids are looked up without locking; only the first sight of a name takes a lock.  They are keyed
+ * by name alone, never by argument, so there is one per pseudo-class name in use (hover, lang,
+ * nth-child, ...), however many lang(..) or nth-child(..) arguments are seen.  Tags and Rules in a
+ * Stylesheet get their ids, and their PseudoSet, when the Stylesheet is built.
+ *
+ * Arguments of :lang and :platform are lowercased when they are added, so matching them is a
+ * plain prefix test: lang(en) matches an element with lang(en-US).
+ */
+package com.baobei.css.model;
+
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Vector;
+import java.util.concurrent.ConcurrentHashMap;
+
+public final class PseudoSet {
+    private static final ConcurrentHashMap<String, Integer> plainIds = new ConcurrentHashMap<String, Integer>();
+    private static final ConcurrentHashMap<String, Integer> argumentIds = new ConcurrentHashMap<String, Integer>();
+    private static int nextId; // Guarded by the PseudoSet class
+
+    private long mask; // Ids 0 - 63
+    private long argMask; // Bits in mask for pseudos with an argument
+    private long[] overflow; // Ids 64 and up, 64 to a long
+    private int count;
+    private int[] argIds; // Id and argument for each pseudo that has one
+    private String[] args;
+    private boolean[] prefixes; // True for lang and platform, which match on a prefix
+    private int[] argWeights; // Weight of each argument, as lang(en) and lang(fr) share an id
+    private int argCount;
+    private int[] weights; // Weight for each id without an argument, or null if none were given
+
+    // Id for a pseudo, with or without an argument.  Ids are shared by every PseudoSet.
+    public static int getId(String pseudo, boolean hasArg) {
+        Integer id = (hasArg ? argumentIds : plainIds).get(pseudo);
+
+        return (id != null ? id : newId(pseudo, hasArg));
+    }
+
+    private static synchronized int newId(String pseudo, boolean hasArg) {
+        ConcurrentHashMap<String, Integer> ids = (hasArg ? argumentIds : plainIds);
+        Integer id = ids.get(pseudo);
+
+        if (id == null) {
+            id = nextId++;
+            ids.put(pseudo, id);
+        }
+
+        return id;
+    }
+
+    private static boolean isPrefix(String pseudo) {
+        return pseudo.equals("lang") || pseudo.equals("platform");
+    }
+
+    // Build a set from the parallel Vectors used by Tag and Rule
+    public static PseudoSet from(Vector<String> pseudos, Vector<String> pseudoArgs) {
+        PseudoSet result = new PseudoSet();
+
+        if (pseudos != null) {
+            for (int x = 0; x < pseudos.size(); x++)
+                result.add(pseudos.elementAt(x), (pseudoArgs != null ? pseudoArgs.elementAt(x) : null));
+        }
+
+        return result;
+    }
+
+    // Build a set from the parallel arrays of a Tag or Rule in a Stylesheet
+    public static PseudoSet from(String[] pseudos, String[] pseudoArgs) {
+        PseudoSet result = new PseudoSet();
+
+        for (int x = 0; x < pseudos.length; x++)
+            result.add(pseudos[x], pseudoArgs[x]);
+
+        return result;
+    }
+
+    public PseudoSet add(String pseudo, String arg) {
+        addId(pseudo, arg);
+
+        return this;
+    }
+
+    // Add an active pseudo with the weight it scores when a Rule requires it
+    public PseudoSet add(String pseudo, String arg, int weight) {
+        int id = addId(pseudo, arg);
+
+        if (arg != null) {
+            argWeights[argCount - 1] = weight;
+            return this;
+        }
+
+        if (weights == null)
+            weights = new int[Math.max(id + 1, 16)];
+        else if (id >= weights.length)
+            weights = Arrays.copyOf(weights, Math.max(id + 1, weights.length * 2));
+
+        weights[id] = weight;
+
+        return this;
+    }
+
+    // Empty the set, so an element can reuse one for its state
+    public void clear() {
+        mask = 0;
+        argMask = 0;
+        count = 0;
+        argCount = 0;
+
+        if (overflow != null)
+            Arrays.fill(overflow, 0);
+
+        if (args != null)
+            Arrays.fill(args, null);
+
+        if (weights != null)
+            Arrays.fill(weights, 0);
+    }
+
+    private int addId(String pseudo, String arg) {
+        int id = getId(pseudo, arg != null);
+
+        if (arg != null) {
+            // The arrays are kept through clear(), so a reused set does not allocate
+            if (argIds == null) {
+                argIds = new int[2];
+                args = new String[2];
+                prefixes = new boolean[2];
+                argWeights = new int[2];
+            } else if (argCount == argIds.length) {
+                argIds = Arrays.copyOf(argIds, argCount * 2);
+                args = Arrays.copyOf(args, argCount * 2);
+                prefixes = Arrays.copyOf(prefixes, argCount * 2);
+                argWeights = Arrays.copyOf(argWeights, argCount * 2);
+            }
+
+            boolean prefix = isPrefix(pseudo);
+
+            argIds[argCount] = id;
+            args[argCount] = (prefix ? arg.toLowerCase(Locale.ROOT) : arg);
+            prefixes[argCount] = prefix;
+            argWeights[argCount] = 0;
+            argCount++;
+
+            if (id < 64)
+                argMask |= (1L << id);
+        }
+
+        setBit(id);
+        count++;
+
+        return id;
+    }
+
+    private void setBit(int id) {
+        if (id < 64) {
+            mask |= (1L << id);
+        } else {
+            int word = (id >> 6) - 1;
+
+            if (overflow == null)
+                overflow = new long[word + 1];
+            else if (word >= overflow.length)
+                overflow = Arrays.copyOf(overflow, word + 1);
+
+            overflow[word] |= (1L << id);
+        }
+    }
+
+    // Number of pseudos that were added
+    public int size() {
+        return count;
+    }
+
+    public boolean isEmpty() {
+        return count == 0;
+    }
+
+    // Number of the pseudos of this set that are found in active
+    public int count(PseudoSet active) {
+        return (int) match(active, false);
+    }
+
+    // Sum of the weights in active of the pseudos of this set that are found in it
+    public int weight(PseudoSet active) {
+        return (int) (match(active, true) >>> 32);
+    }
+
+    // Returns the count in the low 32 bits and the weight in the high 32 bits
+    private long match(PseudoSet active, boolean weighted) {
+        int matching = 0, weight = 0;
+        boolean plainWeighted = weighted && active.weights != null;
+
+        // Pseudos without arguments match on their bits alone
+        long common = mask & active.mask & ~argMask;
+        matching += Long.bitCount(common);
+        if (plainWeighted)
+            weight += active.sumWeights(common, 0);
+
+        if (overflow != null && active.overflow != null) {
+            for (int x = 0; x < Math.min(overflow.length, active.overflow.length); x++) {
+                common = overflow[x] & active.overflow[x] & ~argBits(this, x);
+                matching += Long.bitCount(common);
+                if (plainWeighted)
+                    weight += active.sumWeights(common, (x + 1) << 6);
+            }
+        }
+
+        // Pseudos with arguments also have to match an argument of the same id in active, and
+        // score the weight of that argument
+        for (int x = 0; x < argCount; x++) {
+            int id = argIds[x];
+
+            if (!active.hasBit(id))
+                continue;
+
+            for (int y = 0; y < active.argCount; y++) {
+                if (active.argIds[y] == id && (prefixes[x] ? active.args[y].startsWith(args[x]) : active.args[y].equals(args[x]))) {
+                    matching++;
+                    if (weighted)
+                        weight += active.argWeights[y];
+                }
+            }
+        }
+
+        return ((long) weight << 32) | (matching & 0xffffffffL);
+    }
+
+    private boolean hasBit(int id) {
+        if (id < 64)
+            return (mask & (1L << id)) != 0;
+
+        int word = (id >> 6) - 1;
+
+        return overflow != null && word < overflow.length && (overflow[word] & (1L << id)) != 0;
+    }
+
+    // Bits of the ids in an overflow word that carry arguments
+    private static long argBits(PseudoSet set, int word) {
+        long bits = 0;
+
+        for (int x = 0; x < set.argCount; x++) {
+            int id = set.argIds[x];
+
+            if ((id >> 6) - 1 == word)
+                bits |= (1L << id);
+        }
+
+        return bits;
+    }
+
+    private int sumWeights(long bits, int base) {
+        int sum = 0;
+
+        while (bits != 0) {
+            int id = base + Long.numberOfTrailingZeros(bits);
+
+            if (id < weights.length)
+                sum += weights[id];
+
+            bits &= bits - 1;
+        }
+
+        return sum;
+    }
+}
\ No newline at end of file
@@ -13,8 +13,14 @@ public class Rule {
     public Vector<String> pseudos; // Used when attached to a XML Node to designate this rule is only applied for the pseudo state
     public Vector<String> pseudoArgs; // Used when attached to a XML Node to designate this rule is only applied for the pseudo state
     public int weight; // Used when attached to a XML Node.  See "specificity" in CSS3 selectors spec.  
-    public Vector<RuleValue> values; // Array of RuleValues
+    public Vector<RuleValue> values; // Array of RuleValues.  Always null in a Stylesheet, see getValue().
     public RuleValue lastValue;
+    // Set for a Rule in a Stylesheet, which holds its pseudos and values in arrays and cannot be changed
+    private boolean readOnly;
+    private PseudoSet pseudoSet; // Bits for the pseudos, built with the Stylesheet
+    private String[] pseudoList;
+    private String[] pseudoArgList;
+    private RuleValue[] valueList;
 
     // Used by equals() to return the Rule match result
     public static final int MATCH_NONE = 0;
@@ -26,6 +32,9 @@ public class Rule {
     public static final int WEIGHTED = 2; //  Anything greater than this means that weighted pseudos matched
 
     public RuleValue nextValue() {
+        if (readOnly)
+            throw new IllegalStateException("Rule is part of a Stylesheet and cannot be changed");
+
         if (values == null)
             values = new Vector<RuleValue>(4);
 
@@ -42,10 +51,115 @@ public class Rule {
 
         result.name = this.name;
         result.values = this.values;
+        result.valueList = this.valueList;
+        result.readOnly = this.readOnly;
 
         return result;
     }
 
+    // Deep copy, which can be changed even when this Rule cannot
+    public Rule copy() {
+        Rule result = new Rule();
+
+        result.name = this.name;
+        result.weight = this.weight;
+
+        int count = getPseudoCount();
+        if (count != 0) {
+            result.pseudos = new Vector<String>(count);
+            result.pseudoArgs = new Vector<String>(count);
+
+            for (int x = 0; x < count; x++) {
+                result.pseudos.addElement(getPseudo(x));
+                result.pseudoArgs.addElement(getPseudoArg(x));
+            }
+        }
+
+        count = getValueCount();
+        if (count != 0) {
+            result.values = new Vector<RuleValue>(count);
+            for (int x = 0; x < count; x++)
+                result.values.addElement(getValue(x).copy());
+
+            result.lastValue = result.values.lastElement();
+        }
+
+        return result;
+    }
+
+    // Deep copy for a Stylesheet
+    Rule readOnlyCopy() {
+        Rule result = new Rule();
+
+        result.name = this.name;
+        result.weight = this.weight;
+
+        int count = getPseudoCount();
+        String[] pseudos = null, args = null;
+
+        if (count != 0) {
+            pseudos = new String[count];
+            args = new String[count];
+
+            for (int x = 0; x < count; x++) {
+                pseudos[x] = getPseudo(x);
+                args[x] = getPseudoArg(x);
+            }
+        }
+
+        RuleValue[] values = new RuleValue[getValueCount()];
+        for (int x = 0; x < values.length; x++)
+            values[x] = getValue(x).readOnlyCopy();
+
+        result.setReadOnly(pseudos, args, values);
+
+        return result;
+    }
+
+    // Make this Rule read-only, with these pseudos (or null for none) and values
+    void setReadOnly(String[] pseudos, String[] args, RuleValue[] values) {
+        this.readOnly = true;
+        this.pseudos = null;
+        this.pseudoArgs = null;
+        this.values = null;
+        this.lastValue = null;
+        this.pseudoList = pseudos;
+        this.pseudoArgList = args;
+        this.valueList = values;
+        this.pseudoSet = (pseudos != null ? PseudoSet.from(pseudos, args) : null);
+    }
+
+    public boolean isReadOnly() {
+        return readOnly;
+    }
+
+    public int getPseudoCount() {
+        if (readOnly)
+            return (pseudoList != null ? pseudoList.length : 0);
+
+        return (pseudos != null ? pseudos.size() : 0);
+    }
+
+    public String getPseudo(int index) {
+        return (readOnly ? pseudoList[index] : pseudos.elementAt(index));
+    }
+
+    // Argument of a pseudo, or null if it has none
+    public String getPseudoArg(int index) {
+        return (readOnly ? pseudoArgList[index] : pseudoArgs.elementAt(index));
+    }
+
+    public int getValueCount() {
+        if (readOnly)
+            return valueList.length;
+
+        return (values != null ? values.size() : 0);
+    }
+
+    public RuleValue getValue(int index) {
+        return (readOnly ? valueList[index] : values.elementAt(index));
+    }
+
     // Compare to see if two rules are equal
     // 
     //  psueodsWeight  - contains the relative weight of each pseudo match.  Lower weights are given to "platform" and "lang" pseudos
@@ -59,16 +173,18 @@ public class Rule {
             match[EXPECTED] = match[ACTUAL] = match[WEIGHTED] = result;
 
         if (result == MATCH_NAME) {
-            if (this.pseudos == null && (pseudos == null || pseudos.size() == 0)) {
+            int count = getPseudoCount();
+
+            if (count == 0 && (pseudos == null || pseudos.size() == 0)) {
                 return true;
 
-            } else if (this.pseudos != null && pseudos != null && pseudos.size() != 0) {
-                int count = this.pseudos.size(), matching = 0, matchingWeight = 0;
+            } else if (count != 0 && pseudos != null && pseudos.size() != 0) {
+                int matching = 0, matchingWeight = 0;
                 String pseudo, pseudoMatch, arg, argMatch;
 
                 for (int x = 0; x < count; x++) {
-                    pseudo = this.pseudos.elementAt(x);
-                    arg = this.pseudoArgs.elementAt(x);
+                    pseudo = getPseudo(x);
+                    arg = getPseudoArg(x);
 
                     for (int y = 0; y < pseudos.size(); y++) {
                         pseudoMatch = pseudos.elementAt(y);
@@ -116,24 +232,67 @@ public class Rule {
         return false;
     }
 
+    // Pseudos of this rule as bits, or null if it has none.  A Rule in a Stylesheet built them
+    // once; any other Rule can still change, so it builds them on every call.
+    public PseudoSet getPseudoSet() {
+        if (readOnly)
+            return pseudoSet;
+
+        if (pseudos == null || pseudos.size() == 0)
+            return null;
+
+        return PseudoSet.from(pseudos, pseudoArgs);
+    }
+
+    // Same as the Vector version of equals(), using bits.  The weights are the ones given to the
+    // active PseudoSet with add(pseudo, arg, weight).
+    public boolean equals(String rule, PseudoSet pseudos, int [] match) {
+        int result = (name.equals(rule) ? MATCH_NAME : MATCH_NONE);
+
+        if (match != null)
+            match[EXPECTED] = match[ACTUAL] = match[WEIGHTED] = result;
+
+        if (result == MATCH_NAME) {
+            PseudoSet required = getPseudoSet();
+
+            if (required == null && (pseudos == null || pseudos.isEmpty())) {
+                return true;
+
+            } else if (required != null && pseudos != null && !pseudos.isEmpty()) {
+                int count = required.size(), matching = required.count(pseudos);
+
+                if (match != null) {
+                    match[EXPECTED] = result + count;
+                    match[ACTUAL] = result + matching;
+                    match[WEIGHTED] = result + required.weight(pseudos);
+                }
+
+                if (matching == count && count == pseudos.size())
+                    return true;
+            }
+        }
+
+        return false;
+    }
+
     public String get() throws Exception {
-        return this.values.elementAt(0).get();
+        return getValue(0).get();
     }
 
     public int getInt() throws Exception {
-        return this.values.elementAt(0).getInt();
+        return getValue(0).getInt();
     }
 
     public int getColor() throws Exception {
-        return this.values.elementAt(0).getColor();
+        return getValue(0).getColor();
     }
 
     public void print() {
         System.out.print("    " + name + ": ");
 
-        int count = values.size();
+        int count = getValueCount();
         for (int x = 0; x < count; x++) {
-            RuleValue value = this.values.elementAt(x);
+            RuleValue value = getValue(x);
 
             value.print();
 
@@ -5,6 +5,9 @@
  */
 package com.baobei.css.model;
 
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 import java.util.Vector;
 
 public class RuleValue {
@@ -12,17 +15,48 @@ public class RuleValue {
     public static final int TYPE_STRING = 1;
     public static final int TYPE_FUNCTION = 2;
 
-    Vector<String> names = new Vector<String>(1); // Array of RuleValues.  Used for TYPE_FUNCTION.
+    // What the value was decoded into when it was parsed
+    public static final int KIND_NONE = 0; // Not decoded, use getName()
+    public static final int KIND_NUMBER = 1; // getNumber() and getUnit()
+    public static final int KIND_COLOR = 2; // getARGB()
+    public static final int KIND_KEYWORD = 3; // getKeyword()
+    public static final int KIND_STRING = 4; // Quoted string
+
+    // Units for KIND_NUMBER
+    public static final int UNIT_NONE = 0;
+    public static final int UNIT_PX = 1;
+    public static final int UNIT_PT = 2;
+    public static final int UNIT_EM = 3;
+    public static final int UNIT_PERCENT = 4;
+
+    Vector<String> names; // Array of strings, made by the first setName()
     public int type;
     Vector<RuleValue> args; // Array of RuleValues.  Used for TYPE_FUNCTION.
     public RuleValue lastArg;
 
+    // Set for a value in a Stylesheet, which holds its names and arguments in arrays and cannot be changed
+    private boolean readOnly;
+    private String[] nameList;
+    private List<RuleValue> argList; // Read-only view of an array, or null
+
+    private int kind;
+    private double number;
+    private int unit;
+    private int color; // Packed ARGB
+    private int keyword = Keyword.UNKNOWN;
+    private CssFunction function; // Set when the stylesheet is compiled.  Used for TYPE_FUNCTION.
+    private RuleValue folded; // Result of a constant function call, worked out once
+
     public String getName() {
+        int count = getNameCount();
+
+        if (count == 1)
+            return getName(0);
+
         String result = "";
 
-        int count = this.names.size();
         for (int x = 0; x < count; x++) {
-            result += this.names.elementAt(x);
+            result += getName(x);
             if (x != count - 1)
                 result += " ";
         }
@@ -30,32 +64,345 @@ public class RuleValue {
         return result;
     }
 
+    // Number of names, more than one for values like "Times New Roman"
+    public int getNameCount() {
+        if (readOnly)
+            return nameList.length;
+
+        return (names != null ? names.size() : 0);
+    }
+
+    public String getName(int index) {
+        return (readOnly ? nameList[index] : names.elementAt(index));
+    }
+
     public void setName(String name) {
         // Strip off the start of color values
-        if (name.charAt(0) == '#')
-            name = name.substring(1);
+        if (name.charAt(0) == '#') {
+            setColorName(name.substring(1));
+            return;
+        }
 
-        this.names.addElement(name);
+        addName(name);
+        decode(name, false);
     }
 
-    public String get() throws Exception {
-        String name = getName();
+    // Set the name of a color value, without its '#'
+    public void setColorName(String name) {
+        addName(name);
+        decode(name, true);
+    }
 
-        if (type == RuleValue.TYPE_FUNCTION) {
-            switch (name.charAt(0)) {
-                // url() - Ignore and pass first argument
-                case 'u':
-                    return this.args.elementAt(0).get();
+    private void addName(String name) {
+        if (readOnly)
+            throw new IllegalStateException("RuleValue is part of a Stylesheet and cannot be changed");
 
-                default:
-                    throw new Exception("Undefined function: " + name);
+        if (names == null)
+            names = new Vector<String>(1);
+
+        names.addElement(name);
+    }
+
+    // Decode the value once, so the getters only read fields.  Values made of several names are
+    // left as they are.
+    private void decode(String name, boolean hash) {
+        kind = KIND_NONE;
+        keyword = Keyword.UNKNOWN;
+
+        if (getNameCount() != 1)
+            return;
+
+        if (hash) {
+            long argb = decodeColor(name);
+
+            if (argb != -1) {
+                kind = KIND_COLOR;
+                color = (int) argb;
+                return;
             }
-        } else {
-            return name;
         }
+
+        int unit = decodeUnit(name);
+        if (unit != -1) {
+            kind = KIND_NUMBER;
+            this.unit = unit;
+            this.number = decodeNumber(name);
+            return;
+        }
+
+        keyword = Keyword.getId(name);
+        if (keyword != Keyword.UNKNOWN)
+            kind = KIND_KEYWORD;
+    }
+
+    // Unit of a number like "12", "-1.5em" or "50%", or -1 if name is not a number in a known unit
+    static int decodeUnit(String name) {
+        int length = name.length(), x = 0, digits = 0;
+
+        if (x < length && (name.charAt(x) == '-' || name.charAt(x) == '+'))
+            x++;
+
+        for (; x < length && name.charAt(x) >= '0' && name.charAt(x) <= '9'; x++)
+            digits++;
+
+        if (x < length && name.charAt(x) == '.') {
+            for (x++; x < length && name.charAt(x) >= '0' && name.charAt(x) <= '9'; x++)
+                digits++;
+        }
+
+        if (digits == 0)
+            return -1;
+
+        switch (length - x) {
+            case 0:
+                return UNIT_NONE;
+
+            case 1:
+                return (name.charAt(x) == '%' ? UNIT_PERCENT : -1);
+
+            case 2:
+                if (name.startsWith("px", x))
+                    return UNIT_PX;
+                if (name.startsWith("pt", x))
+                    return UNIT_PT;
+                if (name.startsWith("em", x))
+                    return UNIT_EM;
+                return -1;
+
+            default:
+                return -1;
+        }
+    }
+
+    // Number part of a name that decodeUnit() accepted
+    static double decodeNumber(String name) {
+        int length = name.length(), x = 0, fraction = -1;
+        boolean negative = false;
+        double value = 0;
+
+        if (name.charAt(0) == '-' || name.charAt(0) == '+') {
+            negative = (name.charAt(0) == '-');
+            x++;
+        }
+
+        for (; x < length; x++) {
+            char c = name.charAt(x);
+
+            if (c >= '0' && c <= '9') {
+                value = value * 10 + (c - '0');
+                if (fraction != -1)
+                    fraction++;
+            } else if (c == '.') {
+                fraction = 0;
+            } else {
+                break;
+            }
+        }
+
+        if (fraction > 0)
+            value /= Math.pow(10, fraction);
+
+        return (negative ? -value : value);
+    }
+
+    // Packed ARGB for 3, 4, 6 or 8 hex digits (RGB, RGBA, RRGGBB, RRGGBBAA), or -1
+    static long decodeColor(String hex) {
+        int length = hex.length();
+
+        if (length != 3 && length != 4 && length != 6 && length != 8)
+            return -1;
+
+        long value = 0;
+        for (int x = 0; x < length; x++) {
+            int digit = Character.digit(hex.charAt(x), 16);
+
+            if (digit == -1)
+                return -1;
+
+            // Short forms repeat each digit, ie. "f80" is "ff8800"
+            value = (length < 6 ? (value << 8) | (digit << 4) | digit : (value << 4) | digit);
+        }
+
+        // Without alpha the color is opaque.  With alpha, move it from the end to the top.
+        if (length == 3 || length == 6)
+            return 0xff000000L | value;
+        else
+            return ((value & 0xff) << 24) | (value >>> 8);
+    }
+
+    // What the value was decoded into, one of KIND_*
+    public int getKind() {
+        return (type == TYPE_STRING ? KIND_STRING : kind);
+    }
+
+    // Number of a KIND_NUMBER value, ie. -1.5 for "-1.5em"
+    public double getNumber() throws Exception {
+        if (kind != KIND_NUMBER || type != TYPE_IDENTIFIER)
+            throw new Exception("Not a number: " + getName());
+
+        return number;
+    }
+
+    // Unit of a KIND_NUMBER value, one of UNIT_*
+    public int getUnit() {
+        return unit;
+    }
+
+    // Color of a KIND_COLOR value as ARGB, ie. 0xff336699 for "#369"
+    public int getARGB() throws Exception {
+        if (kind != KIND_COLOR)
+            return 0xff000000 | getColor();
+
+        return color;
+    }
+
+    // Keyword id, or Keyword.UNKNOWN
+    public int getKeyword() {
+        return (type == TYPE_IDENTIFIER ? keyword : Keyword.UNKNOWN);
+    }
+
+    // Deep copy, which can be changed even when this value cannot
+    public RuleValue copy() {
+        RuleValue result = new RuleValue();
+
+        int count = getNameCount();
+        result.names = new Vector<String>(count);
+        for (int x = 0; x < count; x++)
+            result.names.addElement(getName(x));
+
+        copyFields(result);
+
+        count = getArgCount();
+        if (count != 0) {
+            result.args = new Vector<RuleValue>(count);
+            for (int x = 0; x < count; x++)
+                result.args.addElement(getArg(x).copy());
+
+            result.lastArg = result.args.lastElement();
+        }
+
+        return result;
+    }
+
+    // Deep copy for a Stylesheet
+    RuleValue readOnlyCopy() {
+        RuleValue result = new RuleValue();
+        String[] names = new String[getNameCount()];
+
+        for (int x = 0; x < names.length; x++)
+            names[x] = getName(x);
+
+        copyFields(result);
+
+        RuleValue[] args = null;
+        if (getArgCount() != 0) {
+            args = new RuleValue[getArgCount()];
+            for (int x = 0; x < args.length; x++)
+                args[x] = getArg(x).readOnlyCopy();
+        }
+
+        result.setReadOnly(names, args);
+
+        return result;
+    }
+
+    private void copyFields(RuleValue result) {
+        result.type = this.type;
+        result.kind = this.kind;
+        result.number = this.number;
+        result.unit = this.unit;
+        result.color = this.color;
+        result.keyword = this.keyword;
+        result.function = this.function;
+        result.folded = this.folded;
+    }
+
+    // Make this value read-only, with these names and arguments (or null for none)
+    void setReadOnly(String[] names, RuleValue[] args) {
+        this.readOnly = true;
+        this.names = null;
+        this.args = null;
+        this.lastArg = null;
+        this.nameList = names;
+        this.argList = (args != null ? Collections.unmodifiableList(Arrays.asList(args)) : null);
+    }
+
+    public boolean isReadOnly() {
+        return readOnly;
+    }
+
+    // Decode a value read back from a binary stylesheet, as setName() or setColorName() did
+    void decodeName(boolean hash) {
+        if (getNameCount() == 1)
+            decode(getName(0), hash);
+    }
+
+    public int getArgCount() {
+        if (readOnly)
+            return (argList != null ? argList.size() : 0);
+
+        return (args != null ? args.size() : 0);
+    }
+
+    public RuleValue getArg(int index) {
+        return (readOnly ? argList.get(index) : args.elementAt(index));
+    }
+
+    // Arguments of a function value, or null if it has none.  Read-only for a value in a Stylesheet.
+    public List<RuleValue> getArgs() {
+        return (readOnly ? argList : args);
+    }
+
+    void setFunction(CssFunction function) {
+        this.function = function;
+    }
+
+    // Function bound when the stylesheet was compiled, or null
+    CssFunction getFunction() {
+        return function;
+    }
+
+    void setFolded(RuleValue folded) {
+        this.folded = folded;
+    }
+
+    // Result of the function call if it was folded, or null
+    RuleValue getFolded() {
+        return folded;
+    }
+
+    // True if this is a function call that was evaluated when the stylesheet was compiled
+    public boolean isFolded() {
+        return folded != null;
+    }
+
+    // Result of a function value
+    private RuleValue evaluate() throws Exception {
+        if (folded != null)
+            return folded;
+
+        CssFunction call = (function != null ? function : FunctionRegistry.getDefault().get(getName()));
+
+        if (call == null)
+            throw new Exception("Undefined function: " + getName());
+
+        return call.call(getArgs());
+    }
+
+    public String get() throws Exception {
+        if (type == RuleValue.TYPE_FUNCTION)
+            return evaluate().get();
+        else
+            return getName();
     }
 
     public int getInt() throws Exception {
+        if (kind == KIND_NUMBER && type == TYPE_IDENTIFIER)
+            return (int) number;
+
+        if (type == RuleValue.TYPE_FUNCTION)
+            return evaluate().getInt();
+
         String value = getName();
 
         // Check for "pt" units
@@ -72,23 +419,19 @@ public class RuleValue {
     }
 
     public int getColor() throws Exception {
-        String name = getName();
-
-        if (type == RuleValue.TYPE_FUNCTION) {
-            switch (name.charAt(0)) {
-                // saturation(color, saturation_percent)
-                case 's':
-                    return Color.saturation(args);
+        if (kind == KIND_COLOR && type == TYPE_IDENTIFIER)
+            return color & 0xffffff;
 
-                default:
-                    throw new Exception("Undefined function: " + name);
-            }
-        } else {
-            return Integer.parseInt(name, 16);
-        }
+        if (type == RuleValue.TYPE_FUNCTION)
+            return evaluate().getColor();
+        else
+            return Integer.parseInt(getName(), 16);
     }
 
     public RuleValue nextFunctionArg() {
+        if (readOnly)
+            throw new IllegalStateException("RuleValue is part of a Stylesheet and cannot be changed");
+
         if (this.args == null)
             this.args = new Vector<RuleValue>(4);
 
@@ -103,9 +446,9 @@ public class RuleValue {
         if (type == TYPE_STRING)
             System.out.print("\"");
 
-        int count = this.names.size();
+        int count = getNameCount();
         for (int x = 0; x < count; x++) {
-            System.out.print(this.names.elementAt(x));
+            System.out.print(getName(x));
             if (x != count - 1)
                 System.out.print(" ");
         }
@@ -116,10 +459,10 @@ public class RuleValue {
         } else if (type == TYPE_FUNCTION) {
             System.out.print("(");
 
-            if (args != null) {
-                count = args.size();
+            count = getArgCount();
+            if (count != 0) {
                 for (int x = 0; x < count; x++) {
-                    RuleValue value = (RuleValue) this.args.elementAt(x);
+                    RuleValue value = getArg(x);
                     value.print();
 
                     if (x != count - 1)
@@ -0,0 +1,368 @@
+/*
+ * Read-only snapshot of every selector found in a parsed stylesheet
+ *
+ * The parser reuses one Selector while it works, so nothing it builds survives the parse.  A
+ * Stylesheet keeps its own deep copies of the Tags, Rules and RuleValues in plain arrays, and none
+ * of them are changed once it is built, so it can be shared between threads without locking.
+ *
+ * The copies are read-only: they hold their pseudos, values and names in arrays instead of
+ * Vectors (their Vector fields are null), and addPseudo(), nextValue(), setName() and the like
+ * throw IllegalStateException.  Their plain fields (name, relation, weight, type, ...) are public
+ * for the parser and cannot be locked; callers must not assign them.  Use copy() for a Tag, Rule or
+ * RuleValue that can be changed.
+ *
+ * join() makes a view of other Stylesheets that reads through to them instead of copying their
+ * selectors, for a stylesheet that is rebuilt from the same parts with one of them swapped out.
+ *
+ Stylesheet
+    selector                            -> index (0 to many)
+        path                            -> Tag[] (1 to many paths)
+            tag                         -> Tag
+        weight                          -> int for each path
+        rule                            -> Rule (0 to many)
+        line                            -> line where the selector starts
+ */
+package com.baobei.css.model;
+
+import java.util.ArrayList;
+import java.util.Vector;
+
+public final class Stylesheet {
+    private final Tag[][][] paths; // [selector][path][tag]
+    private final int[][] weights; // [selector][path]
+    private final Rule[][] rules; // [selector][rule]
+    private final int[] lines; // [selector]
+    private final String error;
+    private final int errorLine;
+
+    // Set for a view made by join(), whose arrays above are null
+    private final Stylesheet[] parts;
+    private final int[] partStarts; // [part] first selector of the part, then the selector count
+    private final int[] partShifts; // [part] added to the lines of the part
+
+    Stylesheet(Tag[][][] paths, int[][] weights, Rule[][] rules, int[] lines, String error, int errorLine) {
+        this.paths = paths;
+        this.weights = weights;
+        this.rules = rules;
+        this.lines = lines;
+        this.error = error;
+        this.errorLine = errorLine;
+        this.parts = null;
+        this.partStarts = null;
+        this.partShifts = null;
+    }
+
+    private Stylesheet(Stylesheet[] parts, int[] partStarts, int[] partShifts, String error, int errorLine) {
+        this.paths = null;
+        this.weights = null;
+        this.rules = null;
+        this.lines = null;
+        this.error = error;
+        this.errorLine = errorLine;
+        this.parts = parts;
+        this.partStarts = partStarts;
+        this.partShifts = partShifts;
+    }
+
+    // Part of a view that holds a selector: the last one that starts at or before it
+    private int part(int selector) {
+        int low = 0, high = parts.length - 1;
+
+        while (low < high) {
+            int middle = (low + high + 1) >>> 1;
+
+            if (partStarts[middle] <= selector)
+                low = middle;
+            else
+                high = middle - 1;
+        }
+
+        return low;
+    }
+
+    // Number of selectors in the stylesheet
+    public int getSelectorCount() {
+        if (parts != null)
+            return partStarts[parts.length];
+
+        return this.paths.length;
+    }
+
+    // Number of paths for selector
+    public int getPathCount(int selector) {
+        if (parts != null) {
+            int part = part(selector);
+            return parts[part].getPathCount(selector - partStarts[part]);
+        }
+
+        return this.paths[selector].length;
+    }
+
+    // Number of Tags for path
+    public int getTagCount(int selector, int path) {
+        if (parts != null) {
+            int part = part(selector);
+            return parts[part].getTagCount(selector - partStarts[part], path);
+        }
+
+        return this.paths[selector][path].length;
+    }
+
+    // Get specific Tag for the path
+    public Tag getTag(int selector, int path, int tag) {
+        if (parts != null) {
+            int part = part(selector);
+            return parts[part].getTag(selector - partStarts[part], path, tag);
+        }
+
+        Tag[] data = this.paths[selector][path];
+
+        if (tag >= 0 && tag < data.length)
+            return data[tag];
+        else
+            return null;
+    }
+
+    // Get weight (specificity) for the path
+    public int getWeight(int selector, int path) {
+        if (parts != null) {
+            int part = part(selector);
+            return parts[part].getWeight(selector - partStarts[part], path);
+        }
+
+        return this.weights[selector][path];
+    }
+
+    // Number of rules for selector
+    public int getRuleCount(int selector) {
+        if (parts != null) {
+            int part = part(selector);
+            return parts[part].getRuleCount(selector - partStarts[part]);
+        }
+
+        return this.rules[selector].length;
+    }
+
+    public Rule getRule(int selector, int rule) {
+        if (parts != null) {
+            int part = part(selector);
+            return parts[part].getRule(selector - partStarts[part], rule);
+        }
+
+        return this.rules[selector][rule];
+    }
+
+    // Line where the selector starts
+    public int getLine(int selector) {
+        if (parts != null) {
+            int part = part(selector);
+            return parts[part].getLine(selector - partStarts[part]) + partShifts[part];
+        }
+
+        return this.lines[selector];
+    }
+
+    // Description of the error that stopped the parse, or null if the whole input was parsed
+    public String getError() {
+        return this.error;
+    }
+
+    public int getErrorLine() {
+        return this.errorLine;
+    }
+
+    // Join stylesheets parsed from consecutive parts of one source.  Like a parse, the result stops
+    // at the first part with an error.
+    public static Stylesheet concat(Stylesheet[] parts) {
+        return concat(parts, null);
+    }
+
+    // Same, moving the lines of each part by lineShifts[part], when parts were parsed before the
+    // lines above them changed
+    public static Stylesheet concat(Stylesheet[] parts, int[] lineShifts) {
+        int count = 0, last = parts.length - 1;
+
+        for (int x = 0; x < parts.length; x++) {
+            count += parts[x].getSelectorCount();
+
+            if (parts[x].error != null) {
+                last = x;
+                break;
+            }
+        }
+
+        Tag[][][] paths = new Tag[count][][];
+        int[][] weights = new int[count][];
+        Rule[][] rules = new Rule[count][];
+        int[] lines = new int[count];
+        int index = 0;
+
+        for (int x = 0; x <= last; x++) {
+            Stylesheet part = parts[x].flat();
+            int size = part.paths.length;
+
+            System.arraycopy(part.paths, 0, paths, index, size);
+            System.arraycopy(part.weights, 0, weights, index, size);
+            System.arraycopy(part.rules, 0, rules, index, size);
+            System.arraycopy(part.lines, 0, lines, index, size);
+
+            if (lineShifts != null && lineShifts[x] != 0) {
+                for (int y = index; y < index + size; y++)
+                    lines[y] += lineShifts[x];
+            }
+
+            index += size;
+        }
+
+        Stylesheet end = (last >= 0 ? parts[last] : null);
+        int errorLine = (end != null ? end.errorLine : 0);
+
+        if (end != null && end.error != null && lineShifts != null)
+            errorLine += lineShifts[last];
+
+        return new Stylesheet(paths, weights, rules, lines, (end != null ? end.error : null), errorLine);
+    }
+
+    // Same as concat(), as a view.  Only the parts array is copied, so joining is quick, but each
+    // read has to find the part that holds the selector first.
+    public static Stylesheet join(Stylesheet[] parts, int[] lineShifts) {
+        int last = parts.length - 1;
+
+        for (int x = 0; x < parts.length; x++) {
+            if (parts[x].error != null) {
+                last = x;
+                break;
+            }
+        }
+
+        if (last < 0)
+            return new Stylesheet(new Tag[0][][], new int[0][], new Rule[0][], new int[0], null, 0);
+
+        Stylesheet[] joined = new Stylesheet[last + 1];
+        int[] starts = new int[last + 2];
+        int[] shifts = new int[last + 1];
+
+        for (int x = 0; x <= last; x++) {
+            joined[x] = parts[x];
+            starts[x + 1] = starts[x] + parts[x].getSelectorCount();
+
+            if (lineShifts != null)
+                shifts[x] = lineShifts[x];
+        }
+
+        Stylesheet end = parts[last];
+        int errorLine = end.errorLine;
+
+        if (end.error != null)
+            errorLine += shifts[last];
+
+        return new Stylesheet(joined, starts, shifts, end.error, errorLine);
+    }
+
+    // This Stylesheet with its selectors in arrays of its own
+    private Stylesheet flat() {
+        return (parts != null ? concat(parts, partShifts) : this);
+    }
+
+    public void print() {
+        if (parts != null) {
+            flat().print();
+            return;
+        }
+
+        int count = this.paths.length;
+
+        for (int x = 0; x < count; x++) {
+            Tag[][] selector = this.paths[x];
+
+            for (int y = 0; y < selector.length; y++) {
+                Tag[] path = selector[y];
+
+                for (int z = 0; z < path.length; z++)
+                    path[z].print((z == path.length - 1));
+
+                System.out.print("(w=" + this.weights[x][y] + ")");
+
+                if (y != selector.length - 1)
+                    System.out.print(", ");
+            }
+
+            System.out.println("");
+            System.out.println("{");
+
+            for (int y = 0; y < this.rules[x].length; y++)
+                this.rules[x][y].print();
+
+            System.out.println("}");
+            System.out.println("");
+        }
+    }
+
+    // Collects copies of parsed selectors.  Each selector is copied when it is added, so the
+    // parser is free to reuse it afterwards.
+    public static class Builder {
+        private ArrayList<Tag[][]> paths = new ArrayList<Tag[][]>();
+        private ArrayList<int[]> weights = new ArrayList<int[]>();
+        private ArrayList<Rule[]> rules = new ArrayList<Rule[]>();
+        private ArrayList<Integer> lines = new ArrayList<Integer>();
+        private String error;
+        private int errorLine;
+        private FunctionRegistry functions;
+
+        public Builder() {
+            this(FunctionRegistry.getDefault());
+        }
+
+        // Function values in the copied Rules are bound to functions, and constant calls folded
+        public Builder(FunctionRegistry functions) {
+            this.functions = functions;
+        }
+
+        // Selector weights must already be calculated
+        public void add(Selector selector, int line) {
+            int count = selector.paths.size();
+            Tag[][] copy = new Tag[count][];
+            int[] weight = new int[count];
+
+            for (int x = 0; x < count; x++) {
+                Vector<Tag> path = selector.paths.elementAt(x);
+
+                copy[x] = new Tag[path.size()];
+                for (int y = 0; y < copy[x].length; y++)
+                    copy[x][y] = path.elementAt(y).readOnlyCopy();
+
+                weight[x] = selector.getWeight(x);
+            }
+
+            Rule[] rule = new Rule[selector.rules.size()];
+            for (int x = 0; x < rule.length; x++) {
+                rule[x] = selector.rules.elementAt(x).readOnlyCopy();
+                functions.fold(rule[x]);
+            }
+
+            this.paths.add(copy);
+            this.weights.add(weight);
+            this.rules.add(rule);
+            this.lines.add(line);
+        }
+
+        public void setError(String message, int line) {
+            this.error = message;
+            this.errorLine = line;
+        }
+
+        public Stylesheet build() {
+            int count = this.lines.size();
+            int[] line = new int[count];
+
+            for (int x = 0; x < count; x++)
+                line[x] = this.lines.get(x);
+
+            return new Stylesheet(
+                this.paths.toArray(new Tag[count][][]),
+                this.weights.toArray(new int[count][]),
+                this.rules.toArray(new Rule[count][]),
+                line, this.error, this.errorLine);
+        }
+    }
+}
\ No newline at end of file
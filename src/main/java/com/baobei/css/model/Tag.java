@@ -33,17 +33,114 @@ public class Tag {
     public String attribKey;
     public String attribValue;
     public int attribMatch;
-    public Vector<String> pseudos; // Array of strings, or null if no pseudos defined for this tag
-    public Vector<String> pseudoArgs; // Array of strings, or null if no pseudos defined for this tag
+    public Vector<String> pseudos; // Array of strings, or null if no pseudos defined for this tag.  Always null in a Stylesheet, see getPseudo().
+    public Vector<String> pseudoArgs; // Array of strings, or null if no pseudos defined for this tag.  Always null in a Stylesheet.
+
+    // Set for a Tag in a Stylesheet, which holds its pseudos in arrays and cannot be changed
+    private boolean readOnly;
+    private String[] pseudoList;
+    private String[] pseudoArgList;
+    private PseudoSet pseudoSet;
 
     public Tag() {
     }
 
+    // Deep copy, which can be changed even when this Tag cannot
+    public Tag copy() {
+        Tag result = new Tag();
+
+        result.name = this.name;
+        result.relation = this.relation;
+        result.attribKey = this.attribKey;
+        result.attribValue = this.attribValue;
+        result.attribMatch = this.attribMatch;
+
+        int count = getPseudoCount();
+        if (count != 0) {
+            result.pseudos = new Vector<String>(count);
+            result.pseudoArgs = new Vector<String>(count);
+
+            for (int x = 0; x < count; x++) {
+                result.pseudos.addElement(getPseudo(x));
+                result.pseudoArgs.addElement(getPseudoArg(x));
+            }
+        }
+
+        return result;
+    }
+
+    // Deep copy for a Stylesheet
+    Tag readOnlyCopy() {
+        Tag result = new Tag();
+
+        result.name = this.name;
+        result.relation = this.relation;
+        result.attribKey = this.attribKey;
+        result.attribValue = this.attribValue;
+        result.attribMatch = this.attribMatch;
+
+        int count = getPseudoCount();
+        String[] pseudos = null, args = null;
+
+        if (count != 0) {
+            pseudos = new String[count];
+            args = new String[count];
+
+            for (int x = 0; x < count; x++) {
+                pseudos[x] = getPseudo(x);
+                args[x] = getPseudoArg(x);
+            }
+        }
+
+        result.setReadOnly(pseudos, args);
+
+        return result;
+    }
+
+    // Make this Tag read-only, with these pseudos (or null for none)
+    void setReadOnly(String[] pseudos, String[] args) {
+        this.readOnly = true;
+        this.pseudos = null;
+        this.pseudoArgs = null;
+        this.pseudoList = pseudos;
+        this.pseudoArgList = args;
+
+        if (pseudos != null)
+            this.pseudoSet = PseudoSet.from(pseudos, args);
+    }
+
+    public boolean isReadOnly() {
+        return readOnly;
+    }
+
+    public int getPseudoCount() {
+        if (readOnly)
+            return (pseudoList != null ? pseudoList.length : 0);
+
+        return (pseudos != null ? pseudos.size() : 0);
+    }
+
+    public String getPseudo(int index) {
+        return (readOnly ? pseudoList[index] : pseudos.elementAt(index));
+    }
+
+    // Argument of a pseudo, or null if it has none
+    public String getPseudoArg(int index) {
+        return (readOnly ? pseudoArgList[index] : pseudoArgs.elementAt(index));
+    }
+
+    // Bits for the pseudos of a Tag in a Stylesheet, or null if it has none or is not in one
+    public PseudoSet getPseudoSet() {
+        return pseudoSet;
+    }
+
     public boolean isEmpty() {
         return (this.name == null && this.attribKey == null && this.relation == RELATION_UNDEFINED);
     }
 
     public void addPseudo(String pseudo) {
+        checkWritable();
+
         if (pseudos == null) {
             pseudos = new Vector<String>(1);
             pseudoArgs = new Vector<String>(1);
@@ -54,6 +151,8 @@ public class Tag {
     }
 
     public void addPseudoArg(String arg) {
+        checkWritable();
+
         int last = pseudoArgs.size() - 1;
 
         String value = pseudoArgs.elementAt(last);
@@ -66,6 +165,11 @@ public class Tag {
         pseudoArgs.setElementAt(value, last);
     }
 
+    private void checkWritable() {
+        if (readOnly)
+            throw new IllegalStateException("Tag is part of a Stylesheet and cannot be changed");
+    }
+
     // 
     // a = count the number of ID selectors in the selector
     // b = count the number of class selectors, attributes selectors, and pseudo-classes in the selector
@@ -78,8 +182,7 @@ public class Tag {
         if (attribKey != null)
             b++;
 
-        if (pseudos != null)
-            b += pseudos.size();
+        b += getPseudoCount();
 
         return (b * 100) + 1;
     }
@@ -125,12 +228,12 @@ public class Tag {
             System.out.print(']');
         }
 
-        if (pseudos != null) {
-            int count = pseudos.size();
+        int count = getPseudoCount();
+        if (count != 0) {
             for (int x = 0; x < count; x++) {
-                System.out.print("::" + pseudos.elementAt(x));
+                System.out.print("::" + getPseudo(x));
 
-                String arg = pseudoArgs.elementAt(x);
+                String arg = getPseudoArg(x);
                 if (arg != null)
                     System.out.print("(" + arg + ")");
             }
@@ -0,0 +1,173 @@
+package com.baobei.css;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadPoolExecutor;
+
+import com.baobei.css.model.CssFunction;
+import com.baobei.css.model.FunctionRegistry;
+import com.baobei.css.model.RuleValue;
+import com.baobei.css.model.Stylesheet;
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class BatchParseTest {
+    // Each source has a different number of leading lines and its own error, so any state shared
+    // between parses would show up as wrong lines or misplaced errors
+    private static String source(int index) {
+        StringBuilder source = new StringBuilder();
+
+        for (int x = 0; x < index % 13; x++)
+            source.append("\n");
+
+        for (int x = 0; x <= index % 5; x++)
+            source.append(".c").append(index).append(" { width: ").append(x).append("px }\n");
+
+        if (index % 4 == 0)
+            source.append("p { a: \"broken\n");
+
+        return source.toString();
+    }
+
+    private static void assertSame(Stylesheet expected, Stylesheet actual) {
+        assertEquals(expected.getSelectorCount(), actual.getSelectorCount());
+        assertEquals(expected.getError(), actual.getError());
+        assertEquals(expected.getErrorLine(), actual.getErrorLine());
+
+        for (int x = 0; x < expected.getSelectorCount(); x++) {
+            assertEquals(expected.getLine(x), actual.getLine(x));
+            assertEquals(expected.getTag(x, 0, 0).name, actual.getTag(x, 0, 0).name);
+            assertEquals(expected.getRule(x, 0).getValue(0).getName(), actual.getRule(x, 0).getValue(0).getName());
+        }
+    }
+
+    @Test
+    public void isolatesConcurrentSources() throws Exception {
+        LinkedHashMap<String, String> sources = new LinkedHashMap<String, String>();
+        for (int x = 0; x < 500; x++)
+            sources.put("s" + x, source(x));
+
+        ExecutorService executor = Executors.newFixedThreadPool(16);
+        try {
+            List<BatchParser.Result> results = new BatchParser(executor, 4).compileSources(sources);
+
+            assertEquals(500, results.size());
+            for (int x = 0; x < 500; x++) {
+                BatchParser.Result result = results.get(x);
+
+                assertEquals("s" + x, result.getName());
+                assertEquals(x % 4 == 0, result.hasError());
+                assertSame(new Parser(new ParseAdapter()).compile(source(x)), result.getStylesheet());
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void capsOpenFiles() throws Exception {
+        Path directory = Files.createTempDirectory("batch");
+        List<Path> paths = new ArrayList<Path>();
+
+        try {
+            for (int x = 0; x < 40; x++) {
+                Path path = directory.resolve("sheet" + x + ".css");
+                Files.write(path, source(x).getBytes("UTF-8"));
+                paths.add(path);
+            }
+            paths.add(directory.resolve("missing.css"));
+
+            ExecutorService executor = Executors.newFixedThreadPool(8);
+            BatchParser parser = new BatchParser(executor, 2);
+            List<BatchParser.Result> results;
+
+            try {
+                results = parser.compile(paths);
+            } finally {
+                executor.shutdown();
+            }
+
+            assertTrue(parser.getPeakOpenFiles() <= 2);
+            for (int x = 0; x < 40; x++)
+                assertSame(new Parser(new ParseAdapter()).compile(source(x)), results.get(x).getStylesheet());
+
+            BatchParser.Result missing = results.get(40);
+            assertTrue(missing.hasError());
+            assertNull(missing.getStylesheet());
+            assertFalse(missing.getException() == null);
+        } finally {
+            for (Path path : paths)
+                Files.deleteIfExists(path);
+            Files.delete(directory);
+        }
+    }
+
+    // A task interrupted while it waits for a file interrupts the caller too
+    @Test
+    public void passesOnInterrupts() throws Exception {
+        final ThreadPoolExecutor executor = (ThreadPoolExecutor) Executors.newFixedThreadPool(1);
+        Thread stopper = new Thread() {
+            public void run() {
+                // Wait for the task to block on the open files, which are all taken
+                while (executor.getActiveCount() == 0)
+                    Thread.yield();
+
+                executor.shutdownNow();
+            }
+        };
+
+        Path path = Files.createTempFile("batch", ".css");
+
+        stopper.start();
+        try {
+            new BatchParser(executor, 0).compile(Collections.singletonList(path));
+            fail("compile");
+        } catch (InterruptedException e) {
+            assertTrue(Thread.interrupted());
+        } finally {
+            stopper.join();
+            Files.delete(path);
+        }
+    }
+
+    @Test
+    public void passesOnErrors() throws Exception {
+        FunctionRegistry functions = new FunctionRegistry();
+        functions.register("broken", new CssFunction() {
+            public RuleValue call(List<RuleValue> args) {
+                throw new StackOverflowError("broken");
+            }
+
+            public boolean isConstant() {
+                return true;
+            }
+        });
+
+        LinkedHashMap<String, String> sources = new LinkedHashMap<String, String>();
+        sources.put("ok", "a { b: c }");
+        sources.put("broken", "a { b: broken(1) }");
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        BatchParser parser = new BatchParser(executor, 2);
+        parser.setFunctions(functions);
+
+        try {
+            parser.compileSources(sources);
+            fail("compileSources");
+        } catch (StackOverflowError e) {
+            assertEquals("broken", e.getMessage());
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package com.baobei.css;
+
+import java.io.StringWriter;
+
+import com.baobei.css.model.*;
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class CorpusGeneratorTest {
+    private static String read(CorpusGenerator generator) throws Exception {
+        StringWriter out = new StringWriter();
+        char[] buffer = new char[100];
+
+        for (int count; (count = generator.read(buffer, 0, buffer.length)) != -1; )
+            out.write(buffer, 0, count);
+
+        return out.toString();
+    }
+
+    @Test
+    public void isDeterministic() throws Exception {
+        String text = CorpusGenerator.generate(7, 10000);
+
+        assertEquals(text, CorpusGenerator.generate(7, 10000));
+        assertEquals(text, read(new CorpusGenerator(7, 10000)));
+        assertTrue(!text.equals(CorpusGenerator.generate(8, 10000)));
+        assertTrue(text.length() >= 10000 && text.endsWith("}\n"));
+    }
+
+    @Test
+    public void parsesAndCoversTheParser() throws Exception {
+        boolean[] relations = new boolean[Tag.RELATION_SIBLING_ADJACENT + 1];
+        boolean[] matches = new boolean[Tag.ATTRIB_CONTAINS + 1];
+        boolean pseudoArgs = false, nested = false;
+
+        for (int seed = 0; seed < 20; seed++) {
+            Stylesheet sheet = new Parser(new ParseAdapter()).compile(CorpusGenerator.generate(seed, 20000));
+            assertNull(sheet.getError());
+
+            for (int x = 0; x < sheet.getSelectorCount(); x++) {
+                for (int y = 0; y < sheet.getPathCount(x); y++) {
+                    for (int z = 0; z < sheet.getTagCount(x, y); z++) {
+                        Tag tag = sheet.getTag(x, y, z);
+
+                        relations[tag.relation] = true;
+                        matches[tag.attribMatch] = true;
+                        pseudoArgs |= (tag.getPseudoCount() != 0 && tag.getPseudoArg(0) != null);
+                    }
+                }
+
+                for (int y = 0; y < sheet.getRuleCount(x); y++) {
+                    RuleValue value = sheet.getRule(x, y).getValue(0);
+
+                    if (value.type == RuleValue.TYPE_FUNCTION && value.getName().equals("-webkit-gradient"))
+                        nested = true;
+                }
+            }
+        }
+
+        // The parser leaves descendants as RELATION_UNDEFINED
+        assertTrue(relations[Tag.RELATION_UNDEFINED]);
+        for (int x = Tag.RELATION_CLASS; x < relations.length; x++)
+            assertTrue("relation " + x, relations[x]);
+        for (int x = Tag.ATTRIB_ANY; x < matches.length; x++)
+            assertTrue("attribute match " + x, matches[x]);
+
+        assertTrue(pseudoArgs);
+        assertTrue(nested);
+    }
+}
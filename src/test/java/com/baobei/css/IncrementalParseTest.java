@@ -0,0 +1,105 @@
+package com.baobei.css;
+
+import java.util.Random;
+
+import com.baobei.css.model.Stylesheet;
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class IncrementalParseTest {
+    private static final String[] INSERTS = {
+        "x", " ", "\n", "}", "{", "\"", "'", "/*", "*/", ";", "color: red;", "a { b: c }\n", "\r\n"
+    };
+
+    private static void assertSameAsFull(IncrementalParser parser) throws Exception {
+        Stylesheet expected = new Parser(new ParseAdapter()).compile(parser.getText());
+
+        assertEquals(ParallelParseTest.print(expected), ParallelParseTest.print(parser.getStylesheet()));
+    }
+
+    @Test
+    public void matchesFullParse() throws Exception {
+        StringBuilder source = new StringBuilder();
+        for (int x = 0; x < 5; x++)
+            source.append(ParallelParseTest.SHEET);
+
+        IncrementalParser parser = new IncrementalParser(source.toString());
+        Random random = new Random(19);
+
+        assertSameAsFull(parser);
+
+        for (int x = 0; x < 300; x++) {
+            int length = parser.getText().length();
+            int offset = random.nextInt(length + 1);
+            int removed = random.nextInt(Math.min(length - offset, 8) + 1);
+
+            parser.edit(offset, removed, INSERTS[random.nextInt(INSERTS.length)]);
+            assertSameAsFull(parser);
+        }
+
+        parser.edit(0, parser.getText().length(), "");
+        assertSameAsFull(parser);
+        parser.edit(0, 0, ParallelParseTest.SHEET);
+        assertSameAsFull(parser);
+    }
+
+    // Enough blocks for several chunks, with edits that cross from one chunk into the next
+    @Test
+    public void matchesFullParseAcrossChunks() throws Exception {
+        StringBuilder source = new StringBuilder();
+        for (int x = 0; x < 5 * IncrementalParser.CHUNK_BLOCKS; x++)
+            source.append(".item").append(x).append(" { color: red }\n");
+
+        IncrementalParser parser = new IncrementalParser(source.toString());
+        Random random = new Random(64);
+
+        assertSameAsFull(parser);
+
+        for (int x = 0; x < 200; x++) {
+            int length = parser.getText().length();
+            int offset = random.nextInt(length + 1);
+            int removed = random.nextInt(Math.min(length - offset, (x % 10 == 0 ? 2000 : 8)) + 1);
+
+            parser.edit(offset, removed, INSERTS[random.nextInt(INSERTS.length)]);
+            assertSameAsFull(parser);
+        }
+
+        // Whole blocks put back in front of the others are parsed alone
+        int blocks = parser.getBlockCount();
+        parser.edit(0, 0, "a { b: c }");
+        assertEquals(1, parser.getReparsedBlocks());
+        assertEquals(blocks + 1, parser.getBlockCount());
+        assertSameAsFull(parser);
+    }
+
+    @Test
+    public void reparsesOnlyEditedBlocks() throws Exception {
+        StringBuilder source = new StringBuilder();
+        for (int x = 0; x < 100; x++)
+            source.append(".item").append(x).append(" {\n  color: red;\n}\n");
+
+        IncrementalParser parser = new IncrementalParser(source.toString());
+        Stylesheet before = parser.getStylesheet();
+
+        // The newline after the last rule is a block of its own
+        assertEquals(101, parser.getBlockCount());
+
+        int offset = parser.getText().indexOf("red", parser.getText().indexOf(".item50"));
+        parser.edit(offset, 3, "blue;\n  margin: 0");
+
+        Stylesheet after = parser.getStylesheet();
+        assertEquals(1, parser.getReparsedBlocks());
+        assertEquals("blue", after.getRule(50, 0).get());
+        assertSame(before.getRule(49, 0), after.getRule(49, 0));
+        assertSame(before.getRule(51, 0), after.getRule(51, 0));
+        assertEquals(before.getLine(51) + 1, after.getLine(51));
+        assertSameAsFull(parser);
+
+        // Opening a comment swallows the rest of the sheet
+        parser.edit(parser.getText().indexOf(".item90"), 0, "/*");
+        assertTrue(parser.getReparsedBlocks() <= 2);
+        assertSameAsFull(parser);
+    }
+}
@@ -0,0 +1,75 @@
+package com.baobei.css;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.concurrent.ForkJoinPool;
+
+import com.baobei.css.model.Stylesheet;
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ParallelParseTest {
+    // Braces inside comments and strings must not be taken as split points
+    static final String SHEET = StreamingParseTest.SHEET
+        + "/* } not the end { */ p:before { content: \"}\" }\r\n"
+        + "q:after { content: '{ still open' }\n";
+
+    static String print(Stylesheet sheet) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        PrintStream out = System.out;
+
+        System.setOut(new PrintStream(bytes));
+        try {
+            sheet.print();
+        } finally {
+            System.setOut(out);
+        }
+
+        StringBuilder lines = new StringBuilder();
+        for (int x = 0; x < sheet.getSelectorCount(); x++)
+            lines.append(sheet.getLine(x)).append(' ');
+
+        return bytes.toString() + lines + sheet.getError() + " @ " + sheet.getErrorLine();
+    }
+
+    private static void assertSameAsSequential(String source) throws Exception {
+        Stylesheet expected = new Parser(new ParseAdapter()).compile(source);
+        ForkJoinPool pool = new ForkJoinPool(4);
+
+        try {
+            for (int size = 1; size < 400; size += 37) {
+                ParallelParser parser = new ParallelParser(pool);
+                parser.setChunkSize(size);
+
+                assertEquals("chunk size " + size, print(expected), print(parser.compile(source)));
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void matchesSequentialParse() throws Exception {
+        StringBuilder source = new StringBuilder();
+        for (int x = 0; x < 20; x++)
+            source.append(SHEET);
+
+        assertSameAsSequential(source.toString());
+        assertTrue(ParallelParser.split(source.toString().toCharArray(), 1).length > 200);
+    }
+
+    @Test
+    public void stopsAtFirstError() throws Exception {
+        StringBuilder source = new StringBuilder();
+        for (int x = 0; x < 10; x++)
+            source.append(SHEET);
+
+        source.append("a { color: \"unterminated\n }\n");
+        for (int x = 0; x < 10; x++)
+            source.append(SHEET);
+
+        assertSameAsSequential(source.toString());
+        assertSameAsSequential("a { b: c } } d { e: f }\n" + SHEET);
+    }
+}
@@ -0,0 +1,54 @@
+package com.baobei.css;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+public class ParseEventTest {
+    private static final String SHEET = "a, b > c { color: red } d { e: f }\n";
+
+    @Test
+    public void recordsParses() throws Exception {
+        Path file = Files.createTempFile("parse", ".jfr");
+        Recording recording = new Recording();
+
+        try {
+            recording.enable("com.baobei.css.Parse");
+            recording.start();
+
+            Parser parser = new Parser(new ParseAdapter());
+            parser.setSource("theme");
+            parser.compile(SHEET);
+            parser.setSource(null);
+            parser.parse("x { y: z } }");
+
+            recording.stop();
+            recording.dump(file);
+
+            List<RecordedEvent> events = RecordingFile.readAllEvents(file);
+            assertEquals(2, events.size());
+
+            RecordedEvent first = events.get(0);
+            assertEquals("theme", first.getString("source"));
+            assertEquals(SHEET.length(), first.getLong("size"));
+            assertEquals(2, first.getInt("selectors"));
+            assertEquals(0, first.getInt("errors"));
+            assertFalse(first.getDuration().isNegative());
+
+            RecordedEvent second = events.get(1);
+            assertEquals(null, second.getString("source"));
+            assertEquals(1, second.getInt("selectors"));
+            assertEquals(1, second.getInt("errors"));
+        } finally {
+            recording.close();
+            Files.delete(file);
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package com.baobei.css;
+
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ParseMetricsTest {
+    private static final String SHEET = "a, b > c { color: red; margin: 0 1px } /* } */ d[e=\"f\"] { g: url(\"h\") }\n";
+
+    @Test
+    public void countsParse() throws Exception {
+        ParseMetrics metrics = new ParseMetrics();
+        Parser parser = new Parser(new ParseAdapter());
+
+        parser.setMetrics(metrics);
+        parser.compile(SHEET);
+        parser.parse(SHEET);
+
+        ParseMetrics.Snapshot snapshot = metrics.snapshot();
+        assertEquals(2, snapshot.getParses());
+        assertEquals(2 * SHEET.length(), snapshot.getChars());
+        assertEquals(4, snapshot.getSelectors());
+        assertEquals(6, snapshot.getPaths());
+        assertEquals(6, snapshot.getDeclarations());
+        assertEquals(0, snapshot.getErrors());
+        assertEquals(4, snapshot.getTokens("braceLeft"));
+        assertEquals(4, snapshot.getTokens("string"));
+        assertEquals(snapshot.getTotalNanos(), snapshot.getTokenizeNanos() + snapshot.getBuildNanos());
+
+        Map<String, Long> map = snapshot.toMap();
+        assertEquals(Long.valueOf(6), map.get("paths"));
+        assertEquals(Long.valueOf(snapshot.getTokens()), map.get("tokens"));
+        assertTrue(snapshot.toString().contains("tokens.identifier="));
+
+        // Counting stops without metrics
+        parser.setMetrics(null);
+        parser.parse("x { y: z } }");
+        parser.setMetrics(metrics);
+        parser.parse("x { y: z } }");
+
+        assertEquals(3, metrics.snapshot().getParses());
+        assertEquals(1, metrics.snapshot().getErrors());
+
+        metrics.reset();
+        assertEquals(0, metrics.snapshot().getTokens());
+    }
+
+    @Test
+    public void sharedBetweenThreads() throws Exception {
+        StringBuilder source = new StringBuilder();
+        for (int x = 0; x < 100; x++)
+            source.append(SHEET);
+
+        ParseMetrics metrics = new ParseMetrics();
+        ForkJoinPool pool = new ForkJoinPool(4);
+
+        try {
+            ParallelParser parser = new ParallelParser(pool);
+            parser.setChunkSize(100);
+            parser.setMetrics(metrics);
+            parser.compile(source.toString());
+        } finally {
+            pool.shutdown();
+        }
+
+        assertTrue(metrics.snapshot().getParses() > 1);
+        assertEquals(source.length(), metrics.snapshot().getChars());
+        assertEquals(200, metrics.snapshot().getSelectors());
+        assertEquals(300, metrics.snapshot().getDeclarations());
+    }
+}
@@ -0,0 +1,163 @@
+package com.baobei.css;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.baobei.css.model.Selector;
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+
+public class StreamingParseTest {
+    static final String SHEET =
+        "body { color: red } "
+        + "html {\r\n"
+        + "font-family: sans-serif;\r\n"
+        + "line-height: 1.15;\r\n"
+        + "-ms-text-size-adjust: 100%;\r\n"
+        + "-webkit-text-size-adjust: 100% }\r\n"
+        + "/* comment */ a:hover > span.note, ul li:nth-child(2n+1) { background: url(\"img/x.png\") no-repeat }\r\n"
+        + "input[type=\"text\"] { border: solid .25em #bbb; }\r\n"
+        + ".grad { background: -webkit-gradient(linear, left top, color-stop(35%, #eeeeee), color-stop(100%, #cccccc)) }\r\n";
+
+    // Selector source that is generated on the fly, so it never exists in memory as a whole
+    static class GeneratedReader extends Reader {
+        private final String block;
+        private long remaining;
+        private int position;
+
+        GeneratedReader(String block, long size) {
+            this.block = block;
+            this.remaining = size - (size % block.length());
+        }
+
+        public int read(char[] buffer, int offset, int length) {
+            if (remaining == 0)
+                return -1;
+
+            int count = 0;
+            while (count < length && remaining > 0) {
+                int chunk = Math.min(length - count, block.length() - position);
+                block.getChars(position, position + chunk, buffer, offset + count);
+
+                count += chunk;
+                remaining -= chunk;
+                position = (position + chunk) % block.length();
+            }
+
+            return count;
+        }
+
+        public void close() {
+        }
+    }
+
+    static class CountingParser extends Parser {
+        int count;
+
+        public void selectorParsed(Selector selector) {
+            selector.calcWeight();
+            count++;
+        }
+    }
+
+    private static String capture(Parser parser, Object source) throws Exception {
+        PrintStream out = System.out;
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+
+        System.setOut(new PrintStream(buffer, true, "UTF-8"));
+        try {
+            if (source instanceof String)
+                parser.parse((String) source);
+            else
+                parser.parse((Tokenizer) source);
+        } finally {
+            System.setOut(out);
+        }
+
+        return buffer.toString("UTF-8");
+    }
+
+    @Test
+    public void readerMatchesString() throws Exception {
+        String expected = capture(new Parser(), SHEET);
+
+        // Small buffers force tokens to straddle refills
+        for (int size = 1; size < 16; size++)
+            assertEquals("buffer size " + size, expected, capture(new Parser(), new Tokenizer(new StringReader(SHEET), size)));
+
+        assertEquals(expected, capture(new Parser(), new Tokenizer(new StringReader(SHEET))));
+    }
+
+    @Test
+    public void inputStreamMatchesString() throws Exception {
+        CountingParser expected = new CountingParser();
+        expected.parse(SHEET);
+
+        CountingParser actual = new CountingParser();
+        actual.parse(new ByteArrayInputStream(SHEET.getBytes("UTF-8")));
+
+        assertEquals(expected.count, actual.count);
+    }
+
+    @Test
+    public void mappedFileMatchesString() throws Exception {
+        String sheet = SHEET + "p::before { content: \"\u00bb \u4e2d\u6587\" }\r\n";
+        byte[] encoded = sheet.getBytes("UTF-8");
+        String expected = capture(new Parser(), sheet);
+
+        // Multi-byte characters have to decode correctly across buffer refills
+        for (int size = 1; size < 16; size++)
+            assertEquals("buffer size " + size, expected, capture(new Parser(), new Tokenizer(ByteBuffer.wrap(encoded), size)));
+
+        Path file = Files.createTempFile("streaming", ".css");
+        try {
+            Files.write(file, encoded);
+
+            CountingParser parser = new CountingParser();
+            parser.parse(file);
+            assertEquals(6, parser.count);
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    private static List<String> tokens(Tokenizer tokens) throws Exception {
+        ArrayList<String> result = new ArrayList<String>();
+
+        for (int token; (token = tokens.getNext()) != -1; )
+            result.add(Tokenizer.getToken(token) + " " + tokens.text());
+
+        return result;
+    }
+
+    @Test
+    public void decodesSurrogatePairsAcrossRefills() throws Exception {
+        // U+1F600 is two chars, and the token before it leaves a single char free in a 16 char buffer
+        String sheet = "\"xxxxxxxxxxxxxxx\ud83d\ude00y\" z \ud83d\ude00\ud83d\ude00 { a: b }";
+        byte[] encoded = sheet.getBytes("UTF-8");
+        List<String> expected = tokens(new Tokenizer(sheet));
+
+        for (int size = 1; size < 24; size++)
+            assertEquals("buffer size " + size, expected, tokens(new Tokenizer(ByteBuffer.wrap(encoded), size)));
+    }
+
+    // The test heap is capped well below the input size in build.gradle, so this only passes if the input is streamed
+    @Test
+    public void parsesLargeInputInBoundedMemory() throws Exception {
+        long size = 100L * 1024 * 1024;
+        CountingParser parser = new CountingParser();
+
+        GeneratedReader reader = new GeneratedReader(SHEET, size);
+        parser.parse(reader);
+
+        assertEquals((size / SHEET.length()) * 5, parser.count);
+    }
+}
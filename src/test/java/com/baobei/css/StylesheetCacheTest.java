@@ -0,0 +1,158 @@
+package com.baobei.css;
+
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.baobei.css.model.Stylesheet;
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class StylesheetCacheTest {
+    @Test
+    public void evictsLeastRecentlyUsed() throws Exception {
+        StylesheetCache cache = new StylesheetCache(2, 1000);
+        Stylesheet a = cache.get("a { b: c }");
+
+        cache.get("d { e: f }");
+        assertSame(a, cache.get("a { b: c }"));
+
+        // d is the oldest now
+        cache.get("g { h: i }");
+        assertEquals(2, cache.size());
+        assertEquals(1, cache.getEvictions());
+        assertSame(a, cache.get("a { b: c }"));
+
+        assertEquals(2, cache.getHits());
+        assertEquals(3, cache.getMisses());
+        assertEquals(0.4, cache.getHitRate(), 0.001);
+    }
+
+    @Test
+    public void staysWithinWeight() throws Exception {
+        long each = new StylesheetCache().weigh("a { b: c }", new Parser(new ParseAdapter()).compile("a { b: c }"));
+        StylesheetCache cache = new StylesheetCache(100, 2 * each + each / 2);
+
+        // Each source has the same parts, so the same weight
+        cache.get("a { b: c }");
+        cache.get("d { e: f }");
+        cache.get("g { h: i }");
+        assertEquals(2 * each, cache.getWeight());
+        assertEquals(2, cache.size());
+
+        // Too heavy to keep at all
+        Stylesheet big = cache.get("big a b c d e f { color: red; margin: 0 1 2 3; padding: 0 1 2 3 }");
+        assertNotSame(big, cache.get("big a b c d e f { color: red; margin: 0 1 2 3; padding: 0 1 2 3 }"));
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.getWeight());
+    }
+
+    // The default weight estimates the heap of the parsed model, not the length of the text
+    @Test
+    public void weighsTheStylesheet() throws Exception {
+        StylesheetCache cache = new StylesheetCache();
+        String few = "a { b: c }                                ";
+        String many = "a b c d e f g h i j k { l: m n o p q r s }";
+        Parser parser = new Parser(new ParseAdapter());
+
+        assertEquals(few.length(), many.length());
+        assertTrue(cache.weigh(many, parser.compile(many)) > 3 * cache.weigh(few, parser.compile(few)));
+        assertTrue(cache.weigh(few, parser.compile(few)) > 10 * few.length());
+    }
+
+    @Test
+    public void dropsFailedEntries() throws Exception {
+        final AtomicInteger parses = new AtomicInteger();
+        StylesheetCache cache = new StylesheetCache() {
+            protected Stylesheet parse(String source) throws IOException {
+                if (parses.incrementAndGet() == 1)
+                    throw new IllegalStateException("first parse fails");
+
+                return super.parse(source);
+            }
+
+            protected long weigh(String source, Stylesheet sheet) {
+                if (parses.get() == 2)
+                    throw new OutOfMemoryError("second weigh fails");
+
+                return super.weigh(source, sheet);
+            }
+        };
+
+        try {
+            cache.get("a { b: c }");
+            fail("parse");
+        } catch (IllegalStateException e) {
+        }
+
+        assertEquals(0, cache.size());
+
+        try {
+            cache.get("a { b: c }");
+            fail("weigh");
+        } catch (OutOfMemoryError e) {
+        }
+
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.getWeight());
+
+        Stylesheet sheet = cache.get("a { b: c }");
+        assertSame(sheet, cache.get("a { b: c }"));
+        assertEquals(3, parses.get());
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void coalescesConcurrentMisses() throws Exception {
+        final AtomicInteger parses = new AtomicInteger();
+        final CountDownLatch started = new CountDownLatch(1), release = new CountDownLatch(1);
+        final StylesheetCache cache = new StylesheetCache() {
+            protected Stylesheet parse(String source) throws IOException {
+                parses.incrementAndGet();
+                started.countDown();
+
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    throw new IOException(e);
+                }
+
+                return super.parse(source);
+            }
+        };
+
+        final Stylesheet[] results = new Stylesheet[8];
+        Thread[] threads = new Thread[results.length];
+
+        for (int x = 0; x < threads.length; x++) {
+            final int index = x;
+
+            threads[x] = new Thread() {
+                public void run() {
+                    try {
+                        results[index] = cache.get("a { b: c }");
+                    } catch (IOException e) {
+                        throw new RuntimeException(e);
+                    }
+                }
+            };
+            threads[x].start();
+        }
+
+        started.await();
+        release.countDown();
+
+        for (int x = 0; x < threads.length; x++) {
+            threads[x].join();
+            assertSame(results[0], results[x]);
+        }
+
+        assertEquals(1, parses.get());
+        assertEquals(1, cache.getMisses());
+        assertEquals(7, cache.getHits());
+    }
+}
@@ -0,0 +1,44 @@
+package com.baobei.css;
+
+import com.baobei.css.model.Stylesheet;
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class SymbolTableTest {
+    @Test
+    public void internsPastInitialCapacity() {
+        SymbolTable symbols = new SymbolTable();
+
+        for (int x = 0; x < 1000; x++) {
+            char[] name = ("name" + x).toCharArray();
+
+            assertEquals("name" + x, symbols.intern(name, 0, name.length));
+            assertEquals("id" + x, symbols.intern("id" + x));
+        }
+
+        assertEquals(2000, symbols.size());
+        assertSame(symbols.intern("name500"), symbols.intern("name500".toCharArray(), 0, 7));
+        assertEquals(-1, symbols.lookup("missing"));
+    }
+
+    @Test
+    public void clearForgetsSymbols() throws Exception {
+        Parser parser = new Parser(new ParseAdapter());
+        SymbolTable symbols = parser.getSymbols();
+
+        Stylesheet sheet = parser.compile("ul.menu li { color: red }");
+        assertTrue(symbols.lookup("menu") != -1);
+
+        symbols.clear();
+        assertEquals(0, symbols.size());
+        assertEquals(-1, symbols.lookup("menu"));
+
+        // Names compiled before are kept, and later parses intern from an empty table
+        parser.compile("em { margin: 0 }");
+        assertEquals(-1, symbols.lookup("menu"));
+        assertTrue(symbols.lookup("margin") != -1);
+        assertEquals("menu", sheet.getTag(0, 0, 1).name);
+    }
+}
@@ -0,0 +1,161 @@
+package com.baobei.css;
+
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.Properties;
+
+// Parses generated stylesheets from 1 MB to 1 GB and checks the throughput against a baseline.
+// Run by "gradle throughput".  The baseline is recorded on the machine that checks it, since MB/s from
+// one machine says nothing about another; with no baseline the sizes are only reported.
+//
+//   ThroughputSuite <baseline> <report>
+//
+// System properties:
+//   throughput.sizes      Sizes in MB, ie. "1,16,256,1024"; "1,16" by default
+//   throughput.tolerance  How far below the baseline MB/s is allowed, ie. 0.2 for 20%
+//   throughput.update     "true" to write the measured MB/s as the new baseline
+//
+// Exits with 1 if any size is slower than its baseline by more than the tolerance.
+public class ThroughputSuite {
+    static final long SEED = 23;
+    static final int MB = 1024 * 1024;
+    static final int BLOCK_SIZE = 4 * MB;
+
+    // Repeats a block of generated text up to a size, so generating the text is not timed.  The
+    // block ends after a whole rule, so the repeats parse like one long stylesheet.
+    static class RepeatingReader extends Reader {
+        private final String block;
+        private long remaining;
+        private int position;
+
+        RepeatingReader(String block, long size) {
+            this.block = block;
+            this.remaining = size;
+        }
+
+        public int read(char[] buffer, int offset, int length) {
+            if (remaining <= 0)
+                return -1;
+
+            if (position == block.length())
+                position = 0;
+
+            int count = (int) Math.min(Math.min(length, block.length() - position), remaining);
+
+            block.getChars(position, position + count, buffer, offset);
+            position += count;
+            remaining -= count;
+
+            return count;
+        }
+
+        public void close() {
+        }
+    }
+
+    // Returns MB/s and sets peak[0] to the peak heap in bytes
+    static double measure(String block, long size, long[] peak) throws IOException {
+        System.gc();
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans())
+            pool.resetPeakUsage();
+
+        long start = System.nanoTime();
+        new Parser(new ParseAdapter()).parse(new RepeatingReader(block, size));
+        long time = System.nanoTime() - start;
+
+        // Pools peak at different times, so the sum is an upper bound
+        peak[0] = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP)
+                peak[0] += pool.getPeakUsage().getUsed();
+        }
+
+        return (size / (double) MB) / (time / 1e9);
+    }
+
+    public static void main(String[] args) throws IOException {
+        String[] sizes = System.getProperty("throughput.sizes", "1,16").split(",");
+        double tolerance = Double.parseDouble(System.getProperty("throughput.tolerance", "0.2"));
+        boolean update = Boolean.getBoolean("throughput.update");
+
+        Properties baseline = new Properties(), report = new Properties();
+        load(baseline, args[0]);
+        if (baseline.isEmpty() && !update)
+            System.out.println("No baseline in " + args[0] + ", record one with \"gradle throughput -PupdateBaseline\"");
+
+        String block = CorpusGenerator.generate(SEED, BLOCK_SIZE);
+        long[] peak = new long[1];
+
+        // Warm up the JIT, so the small sizes are not measured in the interpreter
+        for (int x = 0; x < 3; x++)
+            measure(block, 16L * MB, peak);
+
+        int failed = 0;
+
+        for (int x = 0; x < sizes.length; x++) {
+            String key = "parse." + sizes[x].trim() + "MB";
+            long size = Long.parseLong(sizes[x].trim()) * MB;
+            double rate = measure(block, size, peak);
+            String expected = baseline.getProperty(key);
+
+            report.setProperty(key, String.format("%.1f", rate));
+            report.setProperty(key + ".peakHeap", String.valueOf(peak[0] / MB));
+
+            String result = "";
+            if (expected != null && rate < Double.parseDouble(expected) * (1 - tolerance)) {
+                result = "  slower than the baseline of " + expected + " MB/s";
+                failed++;
+            }
+
+            System.out.println(String.format("%-14s %8.1f MB/s   peak heap %4d MB%s", key, rate, peak[0] / MB, result));
+
+            if (update)
+                baseline.setProperty(key, String.format("%.1f", rate));
+        }
+
+        store(report, args[1], "Measured by ThroughputSuite");
+        if (update)
+            store(baseline, args[0], "Parse throughput in MB/s, checked by ThroughputSuite");
+
+        if (failed != 0 && !update) {
+            System.out.println(failed + " size(s) regressed by more than " + Math.round(tolerance * 100) + "%");
+            System.exit(1);
+        }
+    }
+
+    private static void load(Properties properties, String path) throws IOException {
+        InputStream in;
+
+        try {
+            in = new FileInputStream(path);
+        } catch (IOException e) {
+            // No baseline yet
+            return;
+        }
+
+        try {
+            properties.load(in);
+        } finally {
+            in.close();
+        }
+    }
+
+    private static void store(Properties properties, String path, String comment) throws IOException {
+        java.io.File parent = new java.io.File(path).getAbsoluteFile().getParentFile();
+        parent.mkdirs();
+
+        OutputStream out = new FileOutputStream(path);
+        try {
+            properties.store(out, comment);
+        } finally {
+            out.close();
+        }
+    }
+}
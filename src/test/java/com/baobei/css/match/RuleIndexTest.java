@@ -0,0 +1,93 @@
+package com.baobei.css.match;
+
+import com.baobei.css.ParseAdapter;
+import com.baobei.css.Parser;
+import com.baobei.css.model.Stylesheet;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class RuleIndexTest {
+    // Entries in source order:
+    //   0 [href]       universal
+    //   1 #main        id "main"
+    //   2 .item        class "item"
+    //   3 li           tag "li"
+    //   4 li.item      class "item"
+    //   5 a            tag "a"
+    //   6 ul li#main   id "main"
+    //   7 [lang]       universal
+    private static final String CSS =
+        "[href] { margin: 0 }\n"
+        + "#main { color: red }\n"
+        + ".item { color: blue }\n"
+        + "li { color: green }\n"
+        + "li.item, a { color: black }\n"
+        + "ul li#main { color: white }\n"
+        + "[lang] { color: gray }\n";
+
+    private RuleIndex index;
+    private RuleIndex.Candidates candidates = new RuleIndex.Candidates();
+
+    @Before
+    public void setUp() throws Exception {
+        Stylesheet sheet = new Parser(new ParseAdapter()).compile(CSS);
+        assertEquals(null, sheet.getError());
+
+        index = new RuleIndex(sheet);
+    }
+
+    private int[] candidates(String name, String id, String... classNames) {
+        index.getCandidates(name, id, classNames, candidates);
+
+        int[] result = new int[candidates.size()];
+        for (int x = 0; x < result.length; x++)
+            result[x] = candidates.get(x);
+
+        return result;
+    }
+
+    @Test
+    public void bucketsByRightmostPart() {
+        assertEquals(8, index.getEntryCount());
+
+        int[] buckets = new int[index.getEntryCount()];
+        for (int x = 0; x < buckets.length; x++)
+            buckets[x] = RuleIndex.getBucket(index.getStylesheet(), index.getSelector(x), index.getPath(x));
+
+        assertArrayEquals(new int[] { RuleIndex.BUCKET_UNIVERSAL, RuleIndex.BUCKET_ID, RuleIndex.BUCKET_CLASS,
+            RuleIndex.BUCKET_TAG, RuleIndex.BUCKET_CLASS, RuleIndex.BUCKET_TAG, RuleIndex.BUCKET_ID,
+            RuleIndex.BUCKET_UNIVERSAL }, buckets);
+
+        // Both paths of "li.item, a" are entries of the same selector
+        assertEquals(index.getSelector(4), index.getSelector(5));
+        assertEquals(1, index.getPath(5));
+    }
+
+    @Test
+    public void looksUpEachBucket() {
+        assertArrayEquals(new int[] { 0, 7 }, candidates(null, null));
+        assertArrayEquals(new int[] { 0, 3, 7 }, candidates("li", null));
+        assertArrayEquals(new int[] { 0, 2, 4, 7 }, candidates(null, null, "item"));
+        assertArrayEquals(new int[] { 0, 1, 6, 7 }, candidates(null, "main"));
+        assertArrayEquals(new int[] { 0, 7 }, candidates("div", "other", "none"));
+    }
+
+    @Test
+    public void mergesInSourceOrder() {
+        assertArrayEquals(new int[] { 0, 1, 2, 3, 4, 6, 7 }, candidates("li", "main", "item"));
+        assertArrayEquals(new int[] { 0, 2, 4, 5, 7 }, candidates("a", null, "item"));
+    }
+
+    @Test
+    public void addsRepeatedClassesOnce() {
+        assertArrayEquals(new int[] { 0, 2, 4, 7 }, candidates(null, null, "item", "item"));
+    }
+
+    @Test
+    public void reusesCandidates() {
+        candidates("li", "main", "item");
+        assertArrayEquals(new int[] { 0, 7 }, candidates(null, null));
+    }
+}
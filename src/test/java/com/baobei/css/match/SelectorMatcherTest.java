@@ -0,0 +1,145 @@
+package com.baobei.css.match;
+
+import com.baobei.css.ParseAdapter;
+import com.baobei.css.Parser;
+import com.baobei.css.model.Stylesheet;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class SelectorMatcherTest {
+    private Element html, body, list, first, second, third, link;
+    private SelectorMatcher matcher = new SelectorMatcher();
+
+    //  html
+    //    body#page.home
+    //      ul.menu
+    //        li.item:first-child
+    //        li.item.active
+    //          a[href="http://x.org/a-b"][lang="en-US"]:hover
+    //        li
+    @Before
+    public void setUp() {
+        html = new Element("html");
+        body = html.append(new Element("body").setId("page").addClass("home"));
+        list = body.append(new Element("ul").addClass("menu"));
+        first = list.append(new Element("li").addClass("item"));
+        second = list.append(new Element("li").addClass("item").addClass("active"));
+        third = list.append(new Element("li"));
+        link = second.append(new Element("a").setAttribute("href", "http://x.org/a-b").setAttribute("lang", "en-US"));
+        link.setPseudo("hover", null, true);
+    }
+
+    private boolean matches(String selector, Node node) throws Exception {
+        Stylesheet sheet = new Parser(new ParseAdapter()).compile(selector + " { color: red }");
+        assertEquals(null, sheet.getError());
+
+        for (int path = 0; path < sheet.getPathCount(0); path++) {
+            if (matcher.matches(sheet, 0, path, node))
+                return true;
+        }
+
+        return false;
+    }
+
+    @Test
+    public void matchesCompounds() throws Exception {
+        assertTrue(matches("li", first));
+        assertTrue(matches("li.item", first));
+        assertTrue(matches(".active", second));
+        assertTrue(matches("#page", body));
+        assertTrue(matches("body#page", body));
+        assertFalse(matches("div#page", body));
+        assertFalse(matches("li.item", third));
+        assertFalse(matches(".active", first));
+    }
+
+    @Test
+    public void matchesCombinators() throws Exception {
+        assertTrue(matches("html a", link));
+        assertTrue(matches("body ul > li a", link));
+        assertTrue(matches("ul.menu > li.active > a", link));
+        assertFalse(matches("body > li", first));
+        assertTrue(matches("li.item + li", second));
+        assertTrue(matches("li.item ~ li", third));
+        assertFalse(matches("li.active + li.item", second));
+        assertFalse(matches("li ~ li.item", first));
+        assertTrue(matches("#page li + li > a", link));
+        assertTrue(matches("div, ul li", third));
+    }
+
+    @Test
+    public void matchesAttributes() throws Exception {
+        assertTrue(matches("a[href]", link));
+        assertTrue(matches("a[href=\"http://x.org/a-b\"]", link));
+        assertTrue(matches("a[href^=\"http:\"]", link));
+        assertTrue(matches("a[href$=\"a-b\"]", link));
+        assertTrue(matches("a[href*=\"x.org\"]", link));
+        assertTrue(matches("a[lang|=\"en\"]", link));
+        assertTrue(matches("ul[class~=\"menu\"] li", first));
+        assertFalse(matches("a[title]", link));
+        assertFalse(matches("a[lang|=\"en-U\"]", link));
+    }
+
+    @Test
+    public void matchesPseudos() throws Exception {
+        assertTrue(matches("a:hover", link));
+        assertTrue(matches("li:first-child", first));
+        assertFalse(matches("li:first-child", second));
+        assertTrue(matches("li:nth-child(2n+1)", third));
+        assertFalse(matches("li:nth-child(2n+1)", second));
+        assertTrue(matches("li:last-child", third));
+        assertFalse(matches("a:focus", link));
+    }
+
+    @Test
+    public void indexCandidatesMatch() throws Exception {
+        Stylesheet sheet = new Parser(new ParseAdapter()).compile(
+            "li { a: b } .item { a: b } #page li.active { a: b } ul > li { a: b } div.item { a: b } li + li { a: b }");
+        RuleIndex index = new RuleIndex(sheet);
+        RuleIndex.Candidates result = new RuleIndex.Candidates();
+
+        matcher.match(index, second, result);
+
+        assertEquals(5, result.size());
+        assertEquals(0, index.getSelector(result.get(0)));
+        assertEquals(5, index.getSelector(result.get(4)));
+    }
+
+    @Test
+    public void ancestorFilterRejects() throws Exception {
+        Stylesheet sheet = new Parser(new ParseAdapter()).compile(
+            "div a { a: b } #page a { a: b } .menu li > a { a: b } li + li a { a: b } ol ~ ul a { a: b } span a { a: b }");
+        RuleIndex index = new RuleIndex(sheet);
+        RuleIndex.Candidates filtered = new RuleIndex.Candidates(), unfiltered = new RuleIndex.Candidates();
+        AncestorFilter filter = new AncestorFilter();
+
+        filter.setParents(link);
+        assertEquals(4, filter.getDepth());
+
+        matcher.match(index, link, filtered, filter);
+        matcher.match(index, link, unfiltered);
+
+        // Filter only ever rejects entries that would not have matched anyway
+        assertEquals(unfiltered.size(), filtered.size());
+        assertEquals(3, filtered.size());
+
+        // Every path needs something on its ancestors.  div and span are not there; ol is only
+        // needed as a sibling, so "ol ~ ul a" passes the filter and is rejected by the full match.
+        assertEquals(6, matcher.getFilterChecks());
+        assertTrue(matcher.getFilterRejections() >= 2);
+
+        // Totals for both calls, all six paths end in "a"
+        assertEquals(2, matcher.getElements());
+        assertEquals(12, matcher.getCandidates());
+        assertEquals(6, matcher.getMatched());
+
+        matcher.resetCounters();
+        assertEquals(0, matcher.getCandidates());
+
+        filter.pop();
+        assertEquals(3, filter.getDepth());
+    }
+}
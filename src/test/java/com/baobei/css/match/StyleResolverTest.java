@@ -0,0 +1,146 @@
+package com.baobei.css.match;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.IdentityHashMap;
+import java.util.List;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import com.baobei.css.ParseAdapter;
+import com.baobei.css.Parser;
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class StyleResolverTest {
+    private static StyleResolver resolver(String css) throws Exception {
+        return new StyleResolver(new RuleIndex(new Parser(new ParseAdapter()).compile(css)));
+    }
+
+    // ul > 100 x li.item, every third one also .odd, with an a inside each
+    private static Element list() {
+        Element list = new Element("ul");
+
+        for (int x = 0; x < 100; x++) {
+            Element item = list.append(new Element("li").addClass("item"));
+            if (x % 3 == 0)
+                item.addClass("odd");
+            item.append(new Element("a"));
+        }
+
+        return list;
+    }
+
+    private static Node last(Node parent) {
+        Node child = parent.getFirstChild();
+
+        while (child.getNextSibling() != null)
+            child = child.getNextSibling();
+
+        return child;
+    }
+
+    @Test
+    public void sharesEquivalentElements() throws Exception {
+        StyleResolver resolver = resolver("li { color: red } .item { color: blue; margin: 1 } li.odd { color: green } .odd a { color: black }");
+        Element list = list();
+        IdentityHashMap<Node, Style> styles = resolver.resolveTree(list);
+
+        assertTrue(resolver.isSharing());
+        assertEquals(201, styles.size());
+
+        // ul, li.item, li.item.odd, and an a under each kind of li
+        assertEquals(5, resolver.getMisses());
+        assertEquals(196, resolver.getHits());
+
+        Element first = (Element) list.getFirstChild(), second = (Element) first.getNextSibling();
+        Style odd = styles.get(first), even = styles.get(second);
+
+        assertEquals("green", odd.getValue("color").get());
+        assertEquals("blue", even.getValue("color").get());
+        assertEquals("1", odd.getValue("margin").get());
+        assertEquals("black", styles.get(first.getFirstChild()).getValue("color").get());
+        assertEquals(null, styles.get(second.getFirstChild()).getValue("color"));
+
+        assertSame(odd, styles.get(second.getNextSibling().getNextSibling()));
+        assertSame(even, styles.get(second.getNextSibling()));
+        assertNotSame(styles.get(first.getFirstChild()), styles.get(second.getFirstChild()));
+    }
+
+    @Test
+    public void keysOnPseudosAndAttributes() throws Exception {
+        StyleResolver resolver = resolver("li:first-child { color: red } li[title=\"x\"] { color: blue }");
+        Element list = list();
+        ((Element) last(list)).setAttribute("title", "x");
+        IdentityHashMap<Node, Style> styles = resolver.resolveTree(list);
+
+        assertEquals("red", styles.get(list.getFirstChild()).getValue("color").get());
+        assertEquals(null, styles.get(list.getFirstChild().getNextSibling()).getValue("color"));
+        assertEquals("blue", styles.get(last(list)).getValue("color").get());
+    }
+
+    @Test
+    public void siblingCombinatorsTurnOffSharing() throws Exception {
+        StyleResolver resolver = resolver("li + li { color: red }");
+        Element list = list();
+        IdentityHashMap<Node, Style> styles = resolver.resolveTree(list);
+
+        assertFalse(resolver.isSharing());
+        assertEquals(0, resolver.getHits());
+        assertEquals(null, styles.get(list.getFirstChild()).getValue("color"));
+        assertEquals("red", styles.get(list.getFirstChild().getNextSibling()).getValue("color").get());
+    }
+
+    @Test
+    public void recordsEvents() throws Exception {
+        StyleResolver resolver = resolver("li.item a { color: red } .odd { b: c }");
+        Path file = Files.createTempFile("resolve", ".jfr");
+        Recording recording = new Recording();
+
+        try {
+            recording.enable("com.baobei.css.Resolve");
+            recording.enable("com.baobei.css.Match");
+            recording.start();
+            resolver.resolveTree(list());
+            recording.stop();
+            recording.dump(file);
+
+            List<RecordedEvent> events = RecordingFile.readAllEvents(file);
+            RecordedEvent resolve = null, match = null;
+            int matches = 0;
+
+            for (RecordedEvent event : events) {
+                if (event.getEventType().getName().equals("com.baobei.css.Resolve")) {
+                    resolve = event;
+                } else {
+                    match = event;
+                    matches++;
+                }
+            }
+
+            assertEquals(201, resolve.getInt("elements"));
+            assertEquals(2, resolve.getInt("selectors"));
+            assertEquals(201, resolve.getLong("hits") + resolve.getLong("matched"));
+
+            // One match event for the tree, with the totals for the elements that were not shared
+            assertEquals(1, matches);
+            assertEquals(resolve.getLong("matched"), match.getLong("elements"));
+            assertEquals(resolver.getMatcher().getCandidates(), match.getLong("candidates"));
+            assertEquals(resolver.getMatcher().getMatched(), match.getLong("matched"));
+            assertTrue(match.getLong("matched") > 0 && match.getLong("candidates") >= match.getLong("matched"));
+
+            // Match Time is only the matcher's part of the resolve, which also shares, cascades
+            // and fills the result
+            long matchTime = match.getDuration("matchTime").toNanos();
+            assertTrue(matchTime > 0);
+            assertTrue(matchTime < resolve.getDuration().toNanos());
+        } finally {
+            recording.close();
+            Files.delete(file);
+        }
+    }
+}
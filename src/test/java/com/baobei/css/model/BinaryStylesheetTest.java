@@ -0,0 +1,146 @@
+package com.baobei.css.model;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import com.baobei.css.ParseAdapter;
+import com.baobei.css.Parser;
+import com.baobei.css.Precompiler;
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class BinaryStylesheetTest {
+    private static final String SHEET =
+        "body, html { margin: 0; font: 12pt \"Times New Roman\" }\n" +
+        "ul#menu > li.item:first-child a[href^=\"http\"]:hover { color: #ff0000; background: url(\"a.png\") }\n" +
+        "p:lang(en) ~ span + em { color: saturation(#336699, 50%); padding: 1 2 3 4 }\n" +
+        "a[lang|=\"en\"] a[class~=\"x\"] a[title$=\"s\"] a[title*=\"\u00e9\"] a[title] { font-weight: bold }\n" +
+        "div { background: -webkit-gradient(linear, color-stop(0.5, #fff)) }\n" +
+        "h1 h2 h3 h4 h5 h6 { weight: 100% }\n";
+
+    private static String print(Stylesheet sheet) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        PrintStream out = System.out;
+
+        System.setOut(new PrintStream(bytes));
+        try {
+            sheet.print();
+        } finally {
+            System.setOut(out);
+        }
+
+        StringBuilder result = new StringBuilder(bytes.toString());
+        for (int x = 0; x < sheet.getSelectorCount(); x++) {
+            result.append(sheet.getLine(x));
+
+            for (int y = 0; y < sheet.getPathCount(x); y++)
+                result.append(' ').append(sheet.getWeight(x, y));
+
+            for (int y = 0; y < sheet.getRuleCount(x); y++) {
+                for (int v = 0; v < sheet.getRule(x, y).getValueCount(); v++) {
+                    RuleValue value = sheet.getRule(x, y).getValue(v);
+                    result.append(' ').append(value.getKind()).append(value.isFolded() ? "f" : "");
+                }
+            }
+
+            result.append('\n');
+        }
+
+        return result + sheet.getError() + " @ " + sheet.getErrorLine();
+    }
+
+    @Test
+    public void roundTrips() throws Exception {
+        Stylesheet sheet = new Parser(new ParseAdapter()).compile(SHEET + "a { b: c } }\n");
+        byte[] bytes = BinaryStylesheet.toBytes(sheet, 42);
+        Stylesheet copy = BinaryStylesheet.read(ByteBuffer.wrap(bytes));
+
+        assertEquals(print(sheet), print(copy));
+        assertEquals(42, BinaryStylesheet.getSourceHash(ByteBuffer.wrap(bytes)));
+        assertEquals("ff0000", copy.getRule(1, 0).get());
+        assertEquals(0xffff0000, copy.getRule(1, 0).getValue(0).getARGB());
+        assertEquals(sheet.getRule(2, 0).get(), copy.getRule(2, 0).get());
+        assertEquals(1, copy.getTag(1, 0, 3).getPseudoSet().size());
+
+        try {
+            BinaryStylesheet.read(ByteBuffer.wrap(bytes, 0, bytes.length / 2));
+            fail("truncated");
+        } catch (IOException e) {
+        }
+
+        bytes[7]++;
+        try {
+            BinaryStylesheet.read(ByteBuffer.wrap(bytes));
+            fail("version");
+        } catch (IOException e) {
+        }
+    }
+
+    // Any damage after the header is an IOException, never another exception or a huge allocation
+    @Test
+    public void corruptBytesAreIOExceptions() throws Exception {
+        byte[] bytes = BinaryStylesheet.toBytes(new Parser(new ParseAdapter()).compile(SHEET), 42);
+        byte[] damage = { (byte) 0xff, (byte) 0x80, 0x7f, 0 };
+
+        for (int x = 16; x < bytes.length; x++) {
+            for (int y = 0; y < damage.length; y++) {
+                byte[] copy = bytes.clone();
+                copy[x] = damage[y];
+
+                try {
+                    BinaryStylesheet.read(ByteBuffer.wrap(copy));
+                } catch (IOException e) {
+                }
+            }
+        }
+
+        // A string count of 2^31 - 1, then one of -1
+        byte[] huge = { 0x43, 0x53, 0x53, 0x42, 0, 0, 0, 1, 0, 0, 0, 0, 0, 0, 0, 42,
+            (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, 0x07, 0 };
+        try {
+            BinaryStylesheet.read(ByteBuffer.wrap(huge));
+            fail("huge count");
+        } catch (IOException e) {
+        }
+
+        huge[20] = 0x0f;
+        try {
+            BinaryStylesheet.read(ByteBuffer.wrap(huge));
+            fail("negative count");
+        } catch (IOException e) {
+        }
+    }
+
+    @Test
+    public void precompiledFileIsUsedUntilSourceChanges() throws Exception {
+        Path source = Files.createTempFile("sheet", ".css");
+        Path binary = Precompiler.getTarget(source);
+
+        try {
+            Files.write(source, SHEET.getBytes("UTF-8"));
+            Precompiler.compile(source, binary);
+
+            Stylesheet expected = new Parser(new ParseAdapter()).compile(SHEET);
+            assertEquals(print(expected), print(BinaryStylesheet.load(binary)));
+            assertEquals(print(expected), print(Precompiler.load(source, binary)));
+
+            // Damaged binary with the right hash, so the source is parsed
+            byte[] bytes = Files.readAllBytes(binary);
+            for (int x = 16; x < bytes.length; x++)
+                bytes[x] = (byte) 0xff;
+            Files.write(binary, bytes);
+            assertEquals(print(expected), print(Precompiler.load(source, binary)));
+
+            // Stale binary, so the source is parsed
+            Files.write(source, "p { color: red }\n".getBytes("UTF-8"));
+            assertEquals(1, Precompiler.load(source, binary).getSelectorCount());
+        } finally {
+            Files.deleteIfExists(binary);
+            Files.delete(source);
+        }
+    }
+}
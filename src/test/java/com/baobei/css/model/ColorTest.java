@@ -0,0 +1,39 @@
+package com.baobei.css.model;
+
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+
+public class ColorTest {
+    @Test
+    public void batchMatchesSingleColors() {
+        // Every 7th color covers all values of each channel
+        int[] in = new int[(1 << 24) / 7 + 1], out = new int[in.length];
+        for (int x = 0; x < in.length; x++)
+            in[x] = x * 7;
+
+        // Negative percentages raise saturation past 255, and must still match bit for bit
+        int[] percents = { 0, 1, 40, 100, 150, -1, -20, -50, -100, -250 };
+        for (int p = 0; p < percents.length; p++) {
+            Color.saturation(in, out, percents[p]);
+
+            for (int x = 0; x < in.length; x++) {
+                if (out[x] != Color.saturation(in[x], percents[p]))
+                    assertEquals("color " + Integer.toHexString(in[x]) + " at " + percents[p] + "%", Color.saturation(in[x], percents[p]), out[x]);
+            }
+        }
+    }
+
+    @Test
+    public void batchInPlace() {
+        int[] colors = { 0xffffff, 0x336699, 0x000000, 0xff0000 };
+        int[] expected = new int[colors.length];
+
+        for (int x = 0; x < colors.length; x++)
+            expected[x] = Color.saturation(colors[x], 40);
+
+        Color.saturation(colors, colors, 40);
+
+        for (int x = 0; x < colors.length; x++)
+            assertEquals(expected[x], colors[x]);
+    }
+}
@@ -0,0 +1,140 @@
+package com.baobei.css.model;
+
+import java.util.List;
+import com.baobei.css.ParseAdapter;
+import com.baobei.css.Parser;
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class CompactStylesheetTest {
+    private static final String SHEET =
+        "body, html { margin: 0; font: 12pt \"Times New Roman\" }\n" +
+        "ul#menu > li.item:first-child a[href^=\"http\"]:hover { color: #ff0000; background: url(\"a.png\") }\n" +
+        "p:lang(en) ~ span + em { color: saturation(#336699, 50%); padding: 1 2 3 4 }\n" +
+        "h1 h2 h3 h4 h5 h6 { weight: 100% }\n";
+
+    @Test
+    public void matchesStylesheet() throws Exception {
+        Stylesheet sheet = new Parser(new ParseAdapter()).compile(SHEET);
+        CompactStylesheet compact = new CompactStylesheet(sheet);
+
+        assertEquals(sheet.getSelectorCount(), compact.getSelectorCount());
+
+        for (int x = 0; x < sheet.getSelectorCount(); x++) {
+            assertEquals(sheet.getLine(x), compact.getLine(x));
+            assertEquals(sheet.getPathCount(x), compact.getPathCount(x));
+
+            for (int y = 0; y < sheet.getPathCount(x); y++) {
+                assertEquals(sheet.getWeight(x, y), compact.getWeight(x, y));
+                assertEquals(sheet.getTagCount(x, y), compact.getTagCount(x, y));
+
+                for (int z = 0; z < sheet.getTagCount(x, y); z++) {
+                    Tag tag = sheet.getTag(x, y, z);
+                    int index = compact.getTag(x, y, z);
+
+                    assertEquals(tag.name, compact.getTagName(index));
+                    assertEquals(tag.relation, compact.getTagRelation(index));
+                    assertEquals(tag.attribKey, compact.getAttribKey(index));
+                    assertEquals(tag.attribValue, compact.getAttribValue(index));
+                    assertEquals(tag.attribMatch, compact.getAttribMatch(index));
+                    assertEquals(tag.getPseudoCount(), compact.getTagPseudoCount(index));
+
+                    for (int p = 0; p < compact.getTagPseudoCount(index); p++) {
+                        assertEquals(tag.getPseudo(p), compact.getTagPseudo(index, p));
+                        assertEquals(tag.getPseudoArg(p), compact.getTagPseudoArg(index, p));
+                    }
+                }
+            }
+
+            assertEquals(sheet.getRuleCount(x), compact.getRuleCount(x));
+
+            for (int y = 0; y < sheet.getRuleCount(x); y++) {
+                Rule rule = sheet.getRule(x, y);
+                int index = compact.getRule(x, y);
+
+                assertEquals(rule.name, compact.getRuleName(index));
+                assertEquals(rule.getValueCount(), compact.getValueCount(index));
+
+                for (int v = 0; v < rule.getValueCount(); v++)
+                    assertValue(rule.getValue(v), compact, compact.getValue(index, v));
+
+                assertEquals(rule.get(), compact.get(compact.getValue(index, 0)));
+                assertEquals(rule.getValueCount(), compact.toRule(index).getValueCount());
+            }
+        }
+
+        int color = compact.getRule(1, 0);
+        assertEquals(0xff0000, compact.getColor(compact.getValue(color, 0)));
+        assertEquals("a.png", compact.get(compact.getValue(compact.getRule(1, 1), 0)));
+        assertEquals(sheet.getRule(2, 0).getColor(), compact.getColor(compact.getValue(compact.getRule(2, 0), 0)));
+        assertEquals(100, compact.getInt(compact.getValue(compact.getRule(3, 0), 0)));
+    }
+
+    // Function values read the same as from the Stylesheet, whatever their name starts with
+    @Test
+    public void evaluatesFunctions() throws Exception {
+        final int[] calls = new int[1];
+        FunctionRegistry functions = new FunctionRegistry();
+
+        functions.register("double", new CssFunction() {
+            public RuleValue call(List<RuleValue> args) throws Exception {
+                calls[0]++;
+
+                RuleValue result = new RuleValue();
+                result.setName(String.valueOf(args.get(0).getInt() * 2));
+                return result;
+            }
+
+            public boolean isConstant() {
+                return false;
+            }
+        });
+
+        Parser parser = new Parser(new ParseAdapter());
+        parser.setFunctions(functions);
+
+        Stylesheet sheet = parser.compile(
+            "a { color: saturation(#336699, 50%); width: url(\"12\"); height: double(21px); top: uhoh(1) }");
+        CompactStylesheet compact = new CompactStylesheet(sheet);
+
+        int color = compact.getValue(compact.getRule(0, 0), 0);
+        assertEquals(sheet.getRule(0, 0).getColor(), compact.getColor(color));
+        assertEquals(sheet.getRule(0, 0).get(), compact.get(color));
+
+        assertEquals(12, compact.getInt(compact.getValue(compact.getRule(0, 1), 0)));
+
+        // Not constant, so called on each read through the registry the parser used
+        int twice = compact.getValue(compact.getRule(0, 2), 0);
+        assertEquals(42, compact.getInt(twice));
+        assertEquals("42", compact.get(twice));
+        assertEquals(2, calls[0]);
+        assertEquals(42, compact.toValue(twice).getInt());
+
+        try {
+            compact.get(compact.getValue(compact.getRule(0, 3), 0));
+            fail("get");
+        } catch (Exception e) {
+            assertEquals("Undefined function: uhoh", e.getMessage());
+        }
+    }
+
+    private static void assertValue(RuleValue value, CompactStylesheet compact, int index) throws Exception {
+        assertEquals(value.type, compact.getType(index));
+        assertEquals(value.getName(), compact.getName(index));
+        assertEquals(value.getArgCount(), compact.getArgCount(index));
+        assertEquals(value.getKind(), compact.getKind(index));
+
+        if (value.getKind() == RuleValue.KIND_NUMBER) {
+            assertEquals(value.getNumber(), compact.getNumber(index), 0);
+            assertEquals(value.getUnit(), compact.getUnit(index));
+            assertEquals(value.getInt(), compact.getInt(index));
+        } else if (value.getKind() == RuleValue.KIND_COLOR) {
+            assertEquals(value.getARGB(), compact.getARGB(index));
+            assertEquals(value.getColor(), compact.getColor(index));
+        }
+
+        for (int x = 0; x < compact.getArgCount(index); x++)
+            assertValue(value.getArg(x), compact, compact.getArg(index, x));
+    }
+}
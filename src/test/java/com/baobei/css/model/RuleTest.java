@@ -0,0 +1,177 @@
+package com.baobei.css.model;
+
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Vector;
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class RuleTest {
+    private static Rule rule(String name, String... pseudos) {
+        Rule rule = new Rule();
+        rule.name = name;
+
+        if (pseudos.length != 0) {
+            rule.pseudos = new Vector<String>();
+            rule.pseudoArgs = new Vector<String>();
+
+            for (int x = 0; x < pseudos.length; x += 2) {
+                rule.pseudos.addElement(pseudos[x]);
+                rule.pseudoArgs.addElement(pseudos[x + 1]);
+            }
+        }
+
+        return rule;
+    }
+
+    // Both versions of equals() must give the same answer and the same match levels
+    private static boolean check(Rule rule, String name, String[] pseudos, String[] args, int[] weights) {
+        Vector<String> pseudoVector = new Vector<String>(Arrays.asList(pseudos));
+        Vector<String> argVector = new Vector<String>(Arrays.asList(args));
+        Vector<Integer> weightVector = new Vector<Integer>();
+        PseudoSet active = new PseudoSet();
+
+        for (int x = 0; x < pseudos.length; x++) {
+            weightVector.addElement(weights[x]);
+            active.add(pseudos[x], args[x], weights[x]);
+        }
+
+        int[] expected = new int[3], actual = new int[3];
+        boolean result = rule.equals(name, pseudoVector, argVector, weightVector, expected);
+
+        assertEquals(result, rule.equals(name, active, actual));
+        assertEquals(Arrays.toString(expected), Arrays.toString(actual));
+
+        return result;
+    }
+
+    @Test
+    public void pseudoSetMatchesVectors() {
+        Rule plain = rule("color");
+        Rule hover = rule("color", "hover", null);
+        Rule lang = rule("color", "hover", null, "lang", "EN");
+        Rule nth = rule("color", "nth-child", "2");
+
+        String[] none = new String[0];
+        assertTrue(check(plain, "color", none, none, new int[0]));
+        assertFalse(check(plain, "margin", none, none, new int[0]));
+        assertFalse(check(hover, "color", none, none, new int[0]));
+
+        assertTrue(check(hover, "color", new String[] { "hover" }, new String[] { null }, new int[] { 4 }));
+        assertFalse(check(hover, "color", new String[] { "focus" }, new String[] { null }, new int[] { 4 }));
+        assertFalse(check(hover, "color", new String[] { "hover", "focus" }, new String[] { null, null }, new int[] { 4, 2 }));
+
+        assertTrue(check(lang, "color", new String[] { "lang", "hover" }, new String[] { "en-US", null }, new int[] { 1, 4 }));
+        assertFalse(check(lang, "color", new String[] { "lang", "hover" }, new String[] { "fr-FR", null }, new int[] { 1, 4 }));
+        assertFalse(check(lang, "color", new String[] { "lang", "focus" }, new String[] { "en", null }, new int[] { 1, 4 }));
+
+        assertTrue(check(nth, "color", new String[] { "nth-child" }, new String[] { "2" }, new int[] { 3 }));
+        assertFalse(check(nth, "color", new String[] { "nth-child" }, new String[] { "3" }, new int[] { 3 }));
+    }
+
+    @Test
+    public void pseudoSetOverflow() {
+        PseudoSet required = new PseudoSet(), active = new PseudoSet();
+
+        for (int x = 0; x < 100; x++) {
+            active.add("state" + x, null, 1);
+            if (x % 10 == 0)
+                required.add("state" + x, null);
+        }
+
+        assertEquals(10, required.count(active));
+        assertEquals(10, required.weight(active));
+        assertEquals(0, active.count(new PseudoSet()));
+    }
+
+    @Test
+    public void pseudoSetClear() {
+        PseudoSet required = new PseudoSet().add("lang", "en").add("state70", null);
+        PseudoSet active = new PseudoSet().add("lang", "en-US", 2).add("state70", null, 3);
+
+        assertEquals(2, required.count(active));
+        assertEquals(5, required.weight(active));
+
+        active.clear();
+        assertTrue(active.isEmpty());
+        assertEquals(0, required.count(active));
+
+        active.add("lang", "fr", 2).add("state70", null, 3);
+        assertEquals(1, required.count(active));
+        assertEquals(3, required.weight(active));
+    }
+
+    // lang(en) and lang(fr) share an id but each keeps its own weight
+    @Test
+    public void pseudoSetWeighsEachArgument() {
+        Rule lang = rule("color", "lang", "en");
+        PseudoSet required = new PseudoSet().add("lang", "en");
+        PseudoSet active = new PseudoSet().add("lang", "en", 5).add("lang", "fr", 7);
+
+        assertEquals(5, required.weight(active));
+        assertEquals(7, new PseudoSet().add("lang", "fr").weight(active));
+        assertEquals(12, new PseudoSet().add("lang", "en").add("lang", "fr").weight(active));
+
+        // Not equal, as lang(fr) is not required, but the weighted match levels are the same
+        assertFalse(check(lang, "color", new String[] { "lang", "lang" }, new String[] { "en", "fr" }, new int[] { 5, 7 }));
+        assertFalse(check(lang, "color", new String[] { "lang", "lang" }, new String[] { "fr", "en-GB" }, new int[] { 7, 5 }));
+
+        // A cleared set reuses its arrays, and starts from no weights
+        active.clear();
+        active.add("lang", "en");
+        assertEquals(0, required.weight(active));
+    }
+
+    @Test
+    public void pseudoSetLowercasesWithoutLocale() {
+        Locale locale = Locale.getDefault();
+
+        Locale.setDefault(new Locale("tr", "TR"));
+        try {
+            // In Turkish "IT".toLowerCase() has a dotless i, which is not a prefix of it-ch
+            PseudoSet required = new PseudoSet().add("lang", "IT");
+            assertEquals(1, required.count(new PseudoSet().add("lang", "it-ch")));
+        } finally {
+            Locale.setDefault(locale);
+        }
+    }
+
+    // Threads that see the same names for the first time together still agree on their ids
+    @Test
+    public void idsAreSharedBetweenThreads() throws Exception {
+        final int[][] ids = new int[8][50];
+        Thread[] threads = new Thread[ids.length];
+
+        for (int x = 0; x < threads.length; x++) {
+            final int[] result = ids[x];
+
+            threads[x] = new Thread() {
+                public void run() {
+                    for (int y = 0; y < result.length; y++)
+                        result[y] = PseudoSet.getId("shared" + y, (y & 1) == 0);
+                }
+            };
+            threads[x].start();
+        }
+
+        for (int x = 0; x < threads.length; x++)
+            threads[x].join();
+
+        for (int x = 1; x < ids.length; x++)
+            assertEquals(Arrays.toString(ids[0]), Arrays.toString(ids[x]));
+
+        assertTrue(PseudoSet.getId("hover", true) != PseudoSet.getId("hover", false));
+        assertEquals(PseudoSet.getId("hover", true), PseudoSet.getId("hover", true));
+    }
+
+    @Test
+    public void stylesheetRulesBuildPseudoSetOnce() {
+        Rule rule = rule("color", "hover", null, "lang", "en").readOnlyCopy();
+
+        assertTrue(rule.getPseudoSet() == rule.getPseudoSet());
+        assertEquals(2, rule.getPseudoSet().size());
+        assertEquals(null, rule("color").readOnlyCopy().getPseudoSet());
+    }
+}
@@ -0,0 +1,110 @@
+package com.baobei.css.model;
+
+import com.baobei.css.ParseAdapter;
+import com.baobei.css.Parser;
+import java.util.List;
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class RuleValueTest {
+    private static RuleValue value(String css) throws Exception {
+        Stylesheet sheet = new Parser(new ParseAdapter()).compile("a { x: " + css + " }");
+        return sheet.getRule(0, 0).getValue(0);
+    }
+
+    @Test
+    public void decodesNumbers() throws Exception {
+        RuleValue value = value("-1.5em");
+        assertEquals(RuleValue.KIND_NUMBER, value.getKind());
+        assertEquals(-1.5, value.getNumber(), 0);
+        assertEquals(RuleValue.UNIT_EM, value.getUnit());
+        assertEquals(-1, value.getInt());
+
+        assertEquals(12, value("12pt").getInt());
+        assertEquals(RuleValue.UNIT_PT, value("12pt").getUnit());
+        assertEquals(RuleValue.UNIT_PX, value("3px").getUnit());
+        assertEquals(RuleValue.UNIT_PERCENT, value("50%").getUnit());
+        assertEquals(RuleValue.UNIT_NONE, value("7").getUnit());
+        assertEquals(0.25, value(".25").getNumber(), 0);
+        assertEquals(RuleValue.KIND_NONE, value("12deg").getKind());
+    }
+
+    @Test
+    public void decodesColors() throws Exception {
+        assertEquals(RuleValue.KIND_COLOR, value("#336699").getKind());
+        assertEquals(0x336699, value("#336699").getColor());
+        assertEquals(0xff336699, value("#336699").getARGB());
+        assertEquals(0xffff8800, value("#f80").getARGB());
+        assertEquals(0x80336699, value("#33669980").getARGB());
+        assertEquals(0x336699, value("#33669980").getColor());
+
+        // Without a '#' the name is a number or keyword, but still works as a color
+        assertEquals(RuleValue.KIND_NUMBER, value("123456").getKind());
+        assertEquals(0x123456, value("123456").getColor());
+    }
+
+    @Test
+    public void decodesKeywordsAndStrings() throws Exception {
+        assertEquals(Keyword.BOLD, value("bold").getKeyword());
+        assertEquals(Keyword.NO_REPEAT, value("no-repeat").getKeyword());
+        assertEquals(Keyword.UNKNOWN, value("sans-serif").getKeyword());
+        assertEquals(RuleValue.KIND_STRING, value("\"bold\"").getKind());
+        assertEquals(Keyword.UNKNOWN, value("\"bold\"").getKeyword());
+        assertEquals(RuleValue.KIND_NONE, value("Times New Roman").getKind());
+    }
+
+    @Test
+    public void foldsConstantFunctions() throws Exception {
+        RuleValue url = value("url(\"a.png\")");
+        assertTrue(url.isFolded());
+        assertEquals("a.png", url.get());
+
+        RuleValue color = value("saturation(#ffffff, 40%)");
+        assertTrue(color.isFolded());
+        assertEquals(Color.saturation(color.getArgs()), color.getColor());
+
+        // Nested calls fold from the inside out
+        RuleValue nested = value("saturation(saturation(#336699, 10%), 20%)");
+        assertTrue(nested.isFolded());
+        assertTrue(nested.getArg(0).isFolded());
+    }
+
+    @Test
+    public void registersFunctions() throws Exception {
+        final int[] calls = new int[1];
+        FunctionRegistry functions = new FunctionRegistry();
+
+        functions.register("double", new CssFunction() {
+            public RuleValue call(List<RuleValue> args) throws Exception {
+                calls[0]++;
+
+                RuleValue result = new RuleValue();
+                result.setName(String.valueOf(args.get(0).getInt() * 2));
+                return result;
+            }
+
+            public boolean isConstant() {
+                return false;
+            }
+        });
+
+        Parser parser = new Parser(new ParseAdapter());
+        parser.setFunctions(functions);
+
+        RuleValue value = parser.compile("a { width: double(21px) }").getRule(0, 0).getValue(0);
+        assertFalse(value.isFolded());
+        assertEquals(42, value.getInt());
+        assertEquals(42, value.getInt());
+        assertEquals(2, calls[0]);
+
+        // Unknown functions still fail when they are read
+        try {
+            value("missing(1)").get();
+            assertTrue(false);
+        } catch (Exception e) {
+            assertEquals("Undefined function: missing", e.getMessage());
+        }
+    }
+}
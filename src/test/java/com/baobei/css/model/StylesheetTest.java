@@ -0,0 +1,155 @@
+package com.baobei.css.model;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import com.baobei.css.ParseAdapter;
+import com.baobei.css.Parser;
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class StylesheetTest {
+    private static final String SHEET =
+        "ul#menu > li.item:hover, a:lang(en) { color: #ff0000; font: 12pt \"Times New Roman\" }\n" +
+        "p { background: url(\"a.png\"); color: saturation(#336699, 50%) }\n";
+
+    private static String print(Stylesheet sheet) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        PrintStream out = System.out;
+
+        System.setOut(new PrintStream(bytes));
+        try {
+            sheet.print();
+        } finally {
+            System.setOut(out);
+        }
+
+        return bytes.toString();
+    }
+
+    @Test
+    public void snapshotSurvivesParserReuse() throws Exception {
+        Parser parser = new Parser(new ParseAdapter());
+        Stylesheet sheet = parser.compile(SHEET);
+        String before = print(sheet);
+
+        // The parser reuses its Selector, Tags and Rules for the next source
+        Stylesheet other = parser.compile("div:focus span { margin: 1 2 } em { color: blue }\n");
+
+        assertEquals(before, print(sheet));
+        assertEquals(2, sheet.getSelectorCount());
+        assertEquals(2, sheet.getPathCount(0));
+        assertEquals("ff0000", sheet.getRule(0, 0).get());
+        assertEquals("Times New Roman", sheet.getRule(0, 1).getValue(1).getName());
+        assertEquals("hover", sheet.getTag(0, 0, 3).getPseudo(0));
+        assertEquals("en", sheet.getTag(0, 1, sheet.getTagCount(0, 1) - 1).getPseudoArg(0));
+        assertEquals("a.png", sheet.getRule(1, 0).get());
+        assertEquals(2, other.getSelectorCount());
+    }
+
+    @Test
+    public void snapshotIsReadOnly() throws Exception {
+        Stylesheet sheet = new Parser(new ParseAdapter()).compile(SHEET);
+        Tag tag = sheet.getTag(0, 0, 3);
+        Rule rule = sheet.getRule(0, 0);
+        RuleValue value = sheet.getRule(1, 1).getValue(0);
+
+        assertTrue(tag.isReadOnly() && rule.isReadOnly() && value.isReadOnly());
+
+        // No Vectors in the snapshot
+        assertNull(tag.pseudos);
+        assertNull(rule.values);
+        assertNull(rule.lastValue);
+        assertNull(value.lastArg);
+
+        try {
+            tag.addPseudo("focus");
+            fail("addPseudo");
+        } catch (IllegalStateException e) {
+        }
+
+        try {
+            rule.nextValue();
+            fail("nextValue");
+        } catch (IllegalStateException e) {
+        }
+
+        try {
+            value.setName("x");
+            fail("setName");
+        } catch (IllegalStateException e) {
+        }
+
+        try {
+            value.nextFunctionArg();
+            fail("nextFunctionArg");
+        } catch (IllegalStateException e) {
+        }
+
+        try {
+            value.getArgs().set(0, new RuleValue());
+            fail("args");
+        } catch (UnsupportedOperationException e) {
+        }
+
+        assertEquals(1, tag.getPseudoCount());
+        assertEquals(2, value.getArgCount());
+    }
+
+    @Test
+    public void joinReadsLikeConcat() throws Exception {
+        Parser parser = new Parser(new ParseAdapter());
+        Stylesheet[] parts = {
+            parser.compile(SHEET),
+            parser.compile(""),
+            parser.compile("div:focus span { margin: 1 2 }\nem { color: blue }\n"),
+            parser.compile("b { c: d }\ni:: { j: k }"),
+            parser.compile("after { the: error }")
+        };
+        int[] shifts = { 0, 2, 2, 4, 6 };
+        Stylesheet joined = Stylesheet.join(parts, shifts), copied = Stylesheet.concat(parts, shifts);
+
+        assertEquals(print(copied), print(joined));
+        assertEquals(copied.getSelectorCount(), joined.getSelectorCount());
+        assertEquals(copied.getError(), joined.getError());
+        assertEquals(copied.getErrorLine(), joined.getErrorLine());
+
+        for (int x = 0; x < joined.getSelectorCount(); x++) {
+            assertEquals(copied.getLine(x), joined.getLine(x));
+            assertEquals(copied.getPathCount(x), joined.getPathCount(x));
+            assertTrue(copied.getRule(x, 0) == joined.getRule(x, 0));
+            assertTrue(copied.getTag(x, 0, 0) == joined.getTag(x, 0, 0));
+        }
+
+        // Parts after an error are left out, as from a parse
+        assertEquals(parts[0].getSelectorCount() + 2 + 1, joined.getSelectorCount());
+        assertEquals(2 + 4, joined.getErrorLine());
+
+        // Views of views, and concat() of views
+        Stylesheet nested = Stylesheet.join(new Stylesheet[] { parts[2], joined, parts[0] }, null);
+        assertEquals(2 + joined.getSelectorCount(), nested.getSelectorCount());
+        assertEquals(joined.getLine(3), nested.getLine(5));
+        assertEquals(print(copied), print(Stylesheet.concat(new Stylesheet[] { joined })));
+        assertEquals(0, Stylesheet.join(new Stylesheet[0], null).getSelectorCount());
+    }
+
+    @Test
+    public void copiesCanBeChanged() throws Exception {
+        Stylesheet sheet = new Parser(new ParseAdapter()).compile(SHEET);
+        Rule rule = sheet.getRule(0, 0).copy();
+        Tag tag = sheet.getTag(0, 0, 3).copy();
+
+        assertFalse(rule.isReadOnly());
+        rule.nextValue().setName("blue");
+        assertEquals(2, rule.getValueCount());
+        assertEquals("ff0000", sheet.getRule(0, 0).get());
+        assertEquals(1, sheet.getRule(0, 0).getValueCount());
+
+        tag.addPseudo("focus");
+        assertEquals(2, tag.getPseudoCount());
+        assertEquals(1, sheet.getTag(0, 0, 3).getPseudoCount());
+    }
+}